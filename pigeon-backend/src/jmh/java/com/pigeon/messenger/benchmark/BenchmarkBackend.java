@@ -0,0 +1,82 @@
+package com.pigeon.messenger.benchmark;
+
+import com.pigeon.messenger.PigeonMessengerApplication;
+import com.pigeon.messenger.entity.Conversation;
+import com.pigeon.messenger.entity.Pigeon;
+import com.pigeon.messenger.entity.User;
+import com.pigeon.messenger.repository.ConversationRepository;
+import com.pigeon.messenger.repository.PigeonRepository;
+import com.pigeon.messenger.repository.UserRepository;
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+// Full application on a random port against an embedded Postgres with the Flyway migrations applied,
+// seeded with two users (each with an active pigeon) and one conversation between them
+class BenchmarkBackend implements AutoCloseable {
+
+    final EmbeddedPostgres postgres;
+    final ConfigurableApplicationContext context;
+    final User sender;
+    final User recipient;
+    final Long conversationId;
+
+    BenchmarkBackend(String... extraArgs) throws IOException {
+        postgres = EmbeddedPostgres.builder().start();
+
+        List<String> args = new ArrayList<>(List.of(
+                "--spring.datasource.url=" + postgres.getJdbcUrl("postgres", "postgres"),
+                "--spring.datasource.username=postgres",
+                "--spring.datasource.password=postgres",
+                "--spring.profiles.active=bench",
+                "--server.port=0",
+                "--pigeon.broadcast.mode=local",
+                "--pigeon.cache.l2=none",
+                // Benchmarks send far more than the daily allowance from one user
+                "--pigeon.quota.enabled=false"));
+        args.addAll(List.of(extraArgs));
+        context = new SpringApplicationBuilder(PigeonMessengerApplication.class).run(args.toArray(new String[0]));
+
+        UserRepository userRepository = context.getBean(UserRepository.class);
+        PigeonRepository pigeonRepository = context.getBean(PigeonRepository.class);
+        sender = createUser(userRepository, pigeonRepository, "Sender", "+12125550100");
+        recipient = createUser(userRepository, pigeonRepository, "Recipient", "+14155550100");
+
+        Conversation conversation = new Conversation();
+        conversation.setParticipantAId(sender.getId());
+        conversation.setParticipantBId(recipient.getId());
+        conversationId = context.getBean(ConversationRepository.class).save(conversation).getId();
+    }
+
+    int port() {
+        return Integer.parseInt(context.getEnvironment().getProperty("local.server.port"));
+    }
+
+    @Override
+    public void close() throws IOException {
+        context.close();
+        postgres.close();
+    }
+
+    private static User createUser(UserRepository userRepository, PigeonRepository pigeonRepository,
+                                   String displayName, String phone) {
+        User user = new User();
+        user.setPhone(phone);
+        user.setDisplayName(displayName);
+        user.setPasswordHash("unused");
+        user = userRepository.save(user);
+
+        Pigeon pigeon = new Pigeon();
+        pigeon.setUserId(user.getId());
+        pigeon.setName(displayName + "'s pigeon");
+        pigeon.setSpriteKey("sprite_blue");
+        pigeon = pigeonRepository.save(pigeon);
+
+        user.setActivePigeonId(pigeon.getId());
+        return userRepository.save(user);
+    }
+}
@@ -0,0 +1,147 @@
+package com.pigeon.messenger.benchmark;
+
+import com.pigeon.messenger.service.broadcast.UserEventRouter;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.broker.DefaultSubscriptionRegistry;
+import org.springframework.messaging.simp.user.DefaultUserDestinationResolver;
+import org.springframework.messaging.simp.user.UserDestinationResult;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.messaging.DefaultSimpUserRegistry;
+import org.springframework.web.socket.messaging.SessionConnectedEvent;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+
+import java.security.Principal;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+// Simple-broker cost of the two delivery models (pigeon.events.delivery) with one session per user, each
+// user in conversationsPerUser conversations:
+//   topic      - a subscription per conversation; an event is matched against every one of them
+//   user-queue - one subscription per session; an event is resolved by user name, then matched
+// deliver is one conversation event reaching both participants, reconnect is a session dropping and
+// subscribing again, as after a deploy. The broker's destination cache holds 1024 destinations, so at
+// these sizes most lookups miss it and pay the scan over all subscriptions.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class BrokerMatchingBenchmark {
+
+    @Param({"topic", "user-queue"})
+    private String delivery;
+
+    @Param({"1000", "10000"})
+    private int users;
+
+    @Param({"20", "200"})
+    private int conversationsPerUser;
+
+    private DefaultSubscriptionRegistry subscriptions;
+    private DefaultSimpUserRegistry userRegistry;
+    private DefaultUserDestinationResolver resolver;
+
+    @Setup
+    public void setup() {
+        subscriptions = new DefaultSubscriptionRegistry();
+        userRegistry = new DefaultSimpUserRegistry();
+        resolver = new DefaultUserDestinationResolver(userRegistry);
+        for (int user = 0; user < users; user++) {
+            connect(user);
+        }
+    }
+
+    @Benchmark
+    public void deliver(Blackhole blackhole) {
+        int user = ThreadLocalRandom.current().nextInt(users);
+        long conversationId = conversationOf(user, ThreadLocalRandom.current().nextInt(conversationsPerUser));
+        if (isTopic()) {
+            blackhole.consume(subscriptions.findSubscriptions(message("/topic/conversations/" + conversationId)));
+            return;
+        }
+        // What UserEventRouter and the user destination handler do: one event per participant
+        for (long participant : participantsOf(conversationId)) {
+            UserDestinationResult result = resolver.resolveDestination(
+                    message(UserEventRouter.userDestination(participant)));
+            if (result != null) {
+                for (String target : result.getTargetDestinations()) {
+                    blackhole.consume(subscriptions.findSubscriptions(message(target)));
+                }
+            }
+        }
+    }
+
+    @Benchmark
+    public void reconnect() {
+        int user = ThreadLocalRandom.current().nextInt(users);
+        String sessionId = sessionId(user);
+        subscriptions.unregisterAllSubscriptions(sessionId);
+        userRegistry.onApplicationEvent(new SessionDisconnectEvent(this,
+                MessageBuilder.withPayload(new byte[0]).build(), sessionId, CloseStatus.NORMAL, principal(user)));
+        connect(user);
+    }
+
+    private void connect(int user) {
+        String sessionId = sessionId(user);
+        SimpMessageHeaderAccessor connected = SimpMessageHeaderAccessor.create(SimpMessageType.CONNECT_ACK);
+        connected.setSessionId(sessionId);
+        userRegistry.onApplicationEvent(new SessionConnectedEvent(this,
+                MessageBuilder.createMessage(new byte[0], connected.getMessageHeaders()), principal(user)));
+
+        if (isTopic()) {
+            for (int i = 0; i < conversationsPerUser; i++) {
+                subscribe(sessionId, "sub-" + i, "/topic/conversations/" + conversationOf(user, i));
+            }
+        } else {
+            // The broker-side destination DefaultUserDestinationResolver gives /user/queue/events
+            subscribe(sessionId, "sub-0", UserEventRouter.EVENTS_QUEUE + "-user" + sessionId);
+        }
+    }
+
+    private void subscribe(String sessionId, String subscriptionId, String destination) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.SUBSCRIBE);
+        accessor.setSessionId(sessionId);
+        accessor.setSubscriptionId(subscriptionId);
+        accessor.setDestination(destination);
+        subscriptions.registerSubscription(MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders()));
+    }
+
+    // User u talks to u+1 .. u+k as participant A and to u-1 .. u-k as participant B, k = half its conversations
+    private long conversationOf(int user, int index) {
+        int half = conversationsPerUser / 2;
+        int offset = index % half + 1;
+        int a = index < half ? user : Math.floorMod(user - offset, users);
+        return (long) a * half + offset - 1;
+    }
+
+    private long[] participantsOf(long conversationId) {
+        int half = conversationsPerUser / 2;
+        long a = conversationId / half;
+        return new long[]{a, (a + conversationId % half + 1) % users};
+    }
+
+    private boolean isTopic() {
+        return "topic".equals(delivery);
+    }
+
+    private static Message<byte[]> message(String destination) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        accessor.setDestination(destination);
+        return MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders());
+    }
+
+    private static String sessionId(int user) {
+        return "session-" + user;
+    }
+
+    private static Principal principal(long user) {
+        String name = String.valueOf(user);
+        return () -> name;
+    }
+}
@@ -0,0 +1,96 @@
+package com.pigeon.messenger.benchmark;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pigeon.messenger.dto.ConversationDTO;
+import com.pigeon.messenger.dto.InboxRow;
+import com.pigeon.messenger.dto.MessageDTO;
+import com.pigeon.messenger.dto.MessagePageDTO;
+import com.pigeon.messenger.entity.Conversation;
+import com.pigeon.messenger.entity.Message;
+import com.pigeon.messenger.entity.User;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+// Response assembly for the two hottest reads: a page of messages and the inbox. The ObjectMapper is
+// configured the way Spring Boot configures the one behind the REST controllers.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class DtoBenchmark {
+
+    @Param({"50", "100"})
+    private int pageSize;
+
+    private ObjectMapper objectMapper;
+    private List<Message> messages;
+    private List<InboxRow> inbox;
+    private MessagePageDTO page;
+
+    @Setup
+    public void setup() {
+        objectMapper = Jackson2ObjectMapperBuilder.json().build();
+
+        LocalDateTime now = LocalDateTime.now();
+        messages = new ArrayList<>(pageSize);
+        inbox = new ArrayList<>(pageSize);
+        for (int i = 0; i < pageSize; i++) {
+            Message message = new Message();
+            message.setId(1_000_000L - i);
+            message.setConversationId(42L);
+            message.setSenderId(i % 2 == 0 ? 1L : 2L);
+            message.setBody("Coo! Message number " + i + " is on its way across town with the afternoon flock.");
+            message.setClientNonce("nonce-" + i);
+            message.setCreatedAt(now.minusMinutes(i));
+            message.setStatus("delivered");
+            messages.add(message);
+
+            Conversation conversation = new Conversation(i + 1L, 1L, i + 2L, message.getId(), now, now);
+            User other = new User();
+            other.setId(i + 2L);
+            other.setDisplayName("User " + i);
+            other.setAvatarUrl("https://ui-avatars.com/api/?name=User" + i);
+            inbox.add(new InboxRow(conversation, message, other, i % 5));
+        }
+        page = buildPage();
+    }
+
+    @Benchmark
+    public List<MessageDTO> messageFromEntity() {
+        return messages.stream().map(MessageDTO::fromEntity).collect(Collectors.toList());
+    }
+
+    @Benchmark
+    public byte[] serializeMessagePage() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(page);
+    }
+
+    @Benchmark
+    public byte[] buildAndSerializeMessagePage() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(buildPage());
+    }
+
+    @Benchmark
+    public List<ConversationDTO> conversationFromInboxRow() {
+        return inbox.stream().map(ConversationDTO::fromInboxRow).collect(Collectors.toList());
+    }
+
+    @Benchmark
+    public byte[] buildAndSerializeInbox() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(conversationFromInboxRow());
+    }
+
+    private MessagePageDTO buildPage() {
+        List<MessageDTO> dtos = messageFromEntity();
+        return new MessagePageDTO(dtos,
+                MessagePageDTO.encodeCursor(dtos.get(dtos.size() - 1).getId()),
+                MessagePageDTO.encodeCursor(dtos.get(0).getId()),
+                true);
+    }
+}
@@ -0,0 +1,96 @@
+package com.pigeon.messenger.benchmark;
+
+import com.pigeon.messenger.security.AuthenticatedUser;
+import com.pigeon.messenger.security.JwtUtil;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+// Token issue and verification as the JWT filter sees them: a repeat token served from the verified
+// token cache, and a token that has to be parsed and have its signature checked every time. The
+// controller pair compares how a handler got the user id before and after the principal was injected:
+// reading Authorization and parsing the token again, or taking the AuthenticatedUser the filter left in
+// the SecurityContext, as @AuthenticationPrincipal resolves it.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class JwtBenchmark {
+
+    private static final String SECRET = "pigeon-messenger-secret-key-change-in-production-minimum-256-bits-required-for-hs256";
+
+    private JwtUtil cachingJwtUtil;
+    private JwtUtil uncachedJwtUtil;
+    private String token;
+
+    @Setup
+    public void setup() {
+        cachingJwtUtil = jwtUtil(Duration.ofMinutes(5));
+        uncachedJwtUtil = jwtUtil(Duration.ZERO);
+        token = cachingJwtUtil.generateToken("+1234567890", 1L);
+    }
+
+    @Benchmark
+    public String generateToken() {
+        return cachingJwtUtil.generateToken("+1234567890", 1L);
+    }
+
+    @Benchmark
+    public AuthenticatedUser authenticateCached() {
+        return cachingJwtUtil.authenticate(token);
+    }
+
+    @Benchmark
+    public AuthenticatedUser authenticateUncached() {
+        return uncachedJwtUtil.authenticate(token);
+    }
+
+    // One request per benchmark thread: the SecurityContext is thread-bound, as in the servlet container
+    @State(Scope.Thread)
+    public static class Request {
+        MockHttpServletRequest servletRequest;
+
+        @Setup
+        public void setup(JwtBenchmark benchmark) {
+            servletRequest = new MockHttpServletRequest();
+            servletRequest.addHeader("Authorization", "Bearer " + benchmark.token);
+            SecurityContextHolder.getContext().setAuthentication(new UsernamePasswordAuthenticationToken(
+                    benchmark.cachingJwtUtil.authenticate(benchmark.token), null, new ArrayList<>()));
+        }
+
+        @TearDown
+        public void tearDown() {
+            SecurityContextHolder.clearContext();
+        }
+    }
+
+    @Benchmark
+    public Long controllerParsesAuthorizationHeader(Request request) {
+        String authHeader = request.servletRequest.getHeader("Authorization");
+        return uncachedJwtUtil.extractUserId(authHeader.substring(7));
+    }
+
+    @Benchmark
+    public Long controllerReadsInjectedPrincipal(Request request) {
+        AuthenticatedUser currentUser = (AuthenticatedUser) SecurityContextHolder.getContext()
+                .getAuthentication().getPrincipal();
+        return currentUser.getUserId();
+    }
+
+    private static JwtUtil jwtUtil(Duration cacheTtl) {
+        JwtUtil jwtUtil = new JwtUtil();
+        ReflectionTestUtils.setField(jwtUtil, "secret", SECRET);
+        ReflectionTestUtils.setField(jwtUtil, "expiration", 86400000L);
+        ReflectionTestUtils.setField(jwtUtil, "cacheMaximumSize", 100000L);
+        ReflectionTestUtils.setField(jwtUtil, "cacheTtl", cacheTtl);
+        ReflectionTestUtils.setField(jwtUtil, "meterRegistry", new SimpleMeterRegistry());
+        jwtUtil.init();
+        return jwtUtil;
+    }
+}
@@ -0,0 +1,97 @@
+package com.pigeon.messenger.benchmark;
+
+import com.pigeon.messenger.config.LoadDataGenerator;
+import com.pigeon.messenger.dto.SearchHitDTO;
+import com.pigeon.messenger.dto.SearchPageDTO;
+import com.pigeon.messenger.service.search.InMemoryMessageSearch;
+import com.pigeon.messenger.service.search.MessageSearch;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Search latency over a LoadDataGenerator data set (Zipf conversation graph, Zipf vocabulary) in both
+// search modes. The busiest user (index 0, in the most conversations) searches a very common, a mid and
+// a rare word, two words together, and fetches a third page by cursor. Generating 10M messages into the
+// embedded Postgres takes several minutes per trial, and memory mode needs the heap below.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 10)
+@Measurement(iterations = 5, time = 10)
+@Fork(value = 1, jvmArgsAppend = "-Xmx8g")
+@Threads(1)
+public class SearchBenchmark {
+
+    private static final int PAGE_SIZE = 20;
+
+    @Param({"postgres", "memory"})
+    private String mode;
+
+    @Param({"10000000"})
+    private int messages;
+
+    private BenchmarkBackend backend;
+    private MessageSearch search;
+    private Long userId;
+    private SearchPageDTO.Cursor thirdPage;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException, InterruptedException {
+        backend = new BenchmarkBackend(
+                "--spring.profiles.include=loadgen",
+                "--pigeon.loadgen.users=100000",
+                "--pigeon.loadgen.conversations=500000",
+                "--pigeon.loadgen.messages=" + messages,
+                "--pigeon.search.mode=" + mode);
+        search = backend.context.getBean(MessageSearch.class);
+        if (search instanceof InMemoryMessageSearch inMemory) {
+            while (!inMemory.isReady()) {
+                Thread.sleep(1000);
+            }
+        }
+        userId = backend.context.getBean(JdbcTemplate.class).queryForObject(
+                "SELECT id FROM users WHERE phone = ?", Long.class, LoadDataGenerator.phoneFor(0));
+
+        List<SearchHitDTO> firstTwoPages = search.search(userId, LoadDataGenerator.wordFor(0), null, PAGE_SIZE * 2);
+        if (firstTwoPages.size() == PAGE_SIZE * 2) {
+            SearchHitDTO last = firstTwoPages.get(firstTwoPages.size() - 1);
+            thirdPage = new SearchPageDTO.Cursor(last.getRank(), last.getMessage().getId());
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        if (backend != null) {
+            backend.close();
+        }
+    }
+
+    @Benchmark
+    public List<SearchHitDTO> commonWord() {
+        return search.search(userId, LoadDataGenerator.wordFor(0), null, PAGE_SIZE + 1);
+    }
+
+    @Benchmark
+    public List<SearchHitDTO> midWord() {
+        return search.search(userId, LoadDataGenerator.wordFor(500), null, PAGE_SIZE + 1);
+    }
+
+    @Benchmark
+    public List<SearchHitDTO> rareWord() {
+        return search.search(userId, LoadDataGenerator.wordFor(20000), null, PAGE_SIZE + 1);
+    }
+
+    @Benchmark
+    public List<SearchHitDTO> twoWords() {
+        return search.search(userId, LoadDataGenerator.wordFor(1) + " " + LoadDataGenerator.wordFor(3), null,
+                PAGE_SIZE + 1);
+    }
+
+    @Benchmark
+    public List<SearchHitDTO> commonWordThirdPage() {
+        return search.search(userId, LoadDataGenerator.wordFor(0), thirdPage, PAGE_SIZE + 1);
+    }
+}
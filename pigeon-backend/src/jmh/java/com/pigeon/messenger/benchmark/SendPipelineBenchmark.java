@@ -0,0 +1,55 @@
+package com.pigeon.messenger.benchmark;
+
+import com.pigeon.messenger.dto.MessageDTO;
+import com.pigeon.messenger.service.MessageIngestionService;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// The whole send path below the controller (ingestion batching, message/flight/outbox inserts, unread
+// bump, outbox dispatch) against a real Postgres with the Flyway migrations applied. One context is
+// shared by all benchmark threads, so the concurrent variant measures how well sends coalesce.
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+public class SendPipelineBenchmark {
+
+    private BenchmarkBackend backend;
+    private MessageIngestionService ingestionService;
+    private final AtomicLong nonce = new AtomicLong();
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        backend = new BenchmarkBackend();
+        ingestionService = backend.context.getBean(MessageIngestionService.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        if (backend != null) {
+            backend.close();
+        }
+    }
+
+    @Benchmark
+    @Threads(1)
+    public MessageDTO send() {
+        return sendOne();
+    }
+
+    @Benchmark
+    @Threads(32)
+    public MessageDTO sendConcurrent() {
+        return sendOne();
+    }
+
+    private MessageDTO sendOne() {
+        long n = nonce.incrementAndGet();
+        return ingestionService.send(backend.conversationId, backend.sender.getId(),
+                "Benchmark message " + n, "bench-" + n);
+    }
+}
@@ -0,0 +1,66 @@
+package com.pigeon.messenger.benchmark;
+
+import com.pigeon.messenger.service.quota.DailySendCounter;
+import com.pigeon.messenger.service.quota.EnergyLedger;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+// Contention on the send quota counters. Each operation is a burst of `senders` virtual threads, each
+// taking `sendsPerSender` sends (daily count plus energy spend) from users drawn out of `users`; users=1
+// puts every sender on the same two cells. Scores are per send, so they compare directly with the
+// cost of a SELECT ... FOR UPDATE on the pigeon row that the counters replace.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Threads(1)
+public class SendQuotaBenchmark {
+
+    private static final int SENDS_PER_SENDER = 100;
+    private static final long DAY = 20_000;
+
+    @Param({"1000", "4000"})
+    private int senders;
+
+    @Param({"1", "100", "100000"})
+    private int users;
+
+    private DailySendCounter sendCounter;
+    private EnergyLedger energyLedger;
+
+    // Fresh counters per burst keep the totals far from overflow; a burst runs long enough for this to be free
+    @Setup(Level.Invocation)
+    public void setup() {
+        sendCounter = new DailySendCounter();
+        energyLedger = new EnergyLedger();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(4000 * SENDS_PER_SENDER)
+    public void burst() throws InterruptedException {
+        // OperationsPerInvocation is fixed, so smaller bursts repeat until they add up to 4000 senders
+        for (int round = 0; round < 4000 / senders; round++) {
+            Thread[] threads = new Thread[senders];
+            for (int i = 0; i < senders; i++) {
+                threads[i] = Thread.ofVirtual().start(this::sendMany);
+            }
+            for (Thread thread : threads) {
+                thread.join();
+            }
+        }
+    }
+
+    private void sendMany() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int i = 0; i < SENDS_PER_SENDER; i++) {
+            long userId = random.nextInt(users);
+            // Limits high enough that every send is taken, so each one does its full CAS work
+            if (sendCounter.tryIncrement(userId, DAY, Integer.MAX_VALUE, id -> 0)) {
+                energyLedger.trySpend(userId, userId, Integer.MAX_VALUE, 15, 10, i);
+            }
+        }
+    }
+}
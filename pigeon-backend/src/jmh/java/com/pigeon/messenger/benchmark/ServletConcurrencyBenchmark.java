@@ -0,0 +1,107 @@
+package com.pigeon.messenger.benchmark;
+
+import com.pigeon.messenger.security.JwtUtil;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Concurrent-connection capacity of the platform-thread and virtual-thread modes. Each operation is a
+// burst of `concurrency` simultaneous REST sends, each on its own connection; a send holds its request
+// thread while the ingestion batcher stores it, which is where the 200-thread Tomcat pool saturates.
+// Per-burst time is the score; ok/rejected/failed counts show what the guardrail shed.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 10)
+@Measurement(iterations = 5, time = 10)
+@Threads(1)
+public class ServletConcurrencyBenchmark {
+
+    @Param({"platform", "virtual"})
+    private String mode;
+
+    @Param({"200", "1000", "4000"})
+    private int concurrency;
+
+    private BenchmarkBackend backend;
+    private HttpClient http;
+    private URI sendUri;
+    private String authorization;
+    private final AtomicLong nonce = new AtomicLong();
+
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    @State(Scope.Thread)
+    public static class Outcomes {
+        public long ok;
+        public long rejected;
+        public long failed;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            ok = 0;
+            rejected = 0;
+            failed = 0;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        backend = new BenchmarkBackend("--spring.threads.virtual.enabled=" + "virtual".equals(mode));
+        http = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(10))
+                .build();
+        sendUri = URI.create("http://localhost:" + backend.port()
+                + "/api/conversations/" + backend.conversationId + "/messages");
+        String token = backend.context.getBean(JwtUtil.class)
+                .generateToken(backend.sender.getPhone(), backend.sender.getId());
+        authorization = "Bearer " + token;
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        if (backend != null) {
+            backend.close();
+        }
+    }
+
+    @Benchmark
+    public void burst(Outcomes outcomes) {
+        List<CompletableFuture<HttpResponse<Void>>> responses = new ArrayList<>(concurrency);
+        for (int i = 0; i < concurrency; i++) {
+            long n = nonce.incrementAndGet();
+            String body = "{\"body\":\"Capacity message " + n + "\",\"clientNonce\":\"capacity-" + n + "\"}";
+            responses.add(http.sendAsync(HttpRequest.newBuilder(sendUri)
+                            .header("Authorization", authorization)
+                            .header("Content-Type", "application/json")
+                            .timeout(Duration.ofSeconds(60))
+                            .POST(HttpRequest.BodyPublishers.ofString(body))
+                            .build(),
+                    HttpResponse.BodyHandlers.discarding()));
+        }
+        for (CompletableFuture<HttpResponse<Void>> response : responses) {
+            try {
+                int status = response.join().statusCode();
+                if (status == 200) {
+                    outcomes.ok++;
+                } else if (status == 503) {
+                    outcomes.rejected++;
+                } else {
+                    outcomes.failed++;
+                }
+            } catch (RuntimeException e) {
+                outcomes.failed++;
+            }
+        }
+    }
+}
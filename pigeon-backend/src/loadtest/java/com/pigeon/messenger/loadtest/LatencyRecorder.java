@@ -0,0 +1,44 @@
+package com.pigeon.messenger.loadtest;
+
+import java.util.Arrays;
+
+// Collects latency samples in microseconds; percentiles are computed once at the end of the run
+public class LatencyRecorder {
+
+    private long[] samples = new long[1024];
+    private int size;
+
+    public synchronized void record(long micros) {
+        if (size == samples.length) {
+            samples = Arrays.copyOf(samples, size * 2);
+        }
+        samples[size++] = micros;
+    }
+
+    public synchronized Summary summarize() {
+        long[] sorted = Arrays.copyOf(samples, size);
+        Arrays.sort(sorted);
+        return new Summary(size,
+                percentile(sorted, 0.50),
+                percentile(sorted, 0.90),
+                percentile(sorted, 0.99),
+                size == 0 ? 0 : sorted[size - 1]);
+    }
+
+    private static long percentile(long[] sorted, double quantile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.ceil(quantile * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(sorted.length - 1, index))];
+    }
+
+    public record Summary(int count, long p50Micros, long p90Micros, long p99Micros, long maxMicros) {
+
+        @Override
+        public String toString() {
+            return String.format("n=%d p50=%.2fms p90=%.2fms p99=%.2fms max=%.2fms",
+                    count, p50Micros / 1000.0, p90Micros / 1000.0, p99Micros / 1000.0, maxMicros / 1000.0);
+        }
+    }
+}
@@ -0,0 +1,326 @@
+package com.pigeon.messenger.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.pigeon.messenger.config.LoadDataGenerator;
+import org.springframework.messaging.converter.MappingJackson2MessageConverter;
+import org.springframework.messaging.simp.stomp.StompFrameHandler;
+import org.springframework.messaging.simp.stomp.StompHeaders;
+import org.springframework.messaging.simp.stomp.StompSession;
+import org.springframework.messaging.simp.stomp.StompSessionHandlerAdapter;
+import org.springframework.web.socket.WebSocketHttpHeaders;
+import org.springframework.web.socket.client.standard.StandardWebSocketClient;
+import org.springframework.web.socket.messaging.WebSocketStompClient;
+import org.springframework.web.socket.sockjs.client.SockJsClient;
+import org.springframework.web.socket.sockjs.client.WebSocketTransport;
+
+import java.io.File;
+import java.lang.reflect.Type;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Load driver for a running backend seeded by the loadgen profile. Logs in the first load.users
+// generated users, opens one STOMP session per user subscribed to that user's events (load.delivery=
+// user-queue, one subscription) or to each of its conversations (topic, as the backend is set), then has
+// load.senders REST threads send at load.rate messages/s (0 = as fast as possible) for load.duration,
+// into conversations between two logged-in users. Every send carries a unique clientNonce, so the time from POST to the broadcast arriving on a STOMP
+// session is measured per delivery. Samples taken during load.warmup are discarded.
+public class LoadDriver {
+
+    private final String baseUrl = System.getProperty("load.baseUrl", "http://localhost:8080");
+    private final int userCount = Integer.getInteger("load.users", 200);
+    private final int senderCount = Integer.getInteger("load.senders", 16);
+    private final double rate = Double.parseDouble(System.getProperty("load.rate", "500"));
+    private final Duration duration = Duration.parse(System.getProperty("load.duration", "PT60S"));
+    private final Duration warmup = Duration.parse(System.getProperty("load.warmup", "PT10S"));
+    private final Duration drain = Duration.parse(System.getProperty("load.drain", "PT5S"));
+    private final String password = System.getProperty("load.password", "password");
+    private final String output = System.getProperty("load.output");
+    private final boolean userQueue = !"topic".equals(System.getProperty("load.delivery", "user-queue"));
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final HttpClient http = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(5)).build();
+    private final String runId = UUID.randomUUID().toString().substring(0, 8);
+
+    private final Map<String, PendingSend> pending = new ConcurrentHashMap<>();
+    private final Set<String> received = ConcurrentHashMap.newKeySet();
+    private final LatencyRecorder sendLatency = new LatencyRecorder();
+    private final LatencyRecorder deliveryLatency = new LatencyRecorder();
+    private final AtomicLong sendsOk = new AtomicLong();
+    private final AtomicLong sendsFailed = new AtomicLong();
+    private final AtomicLong deliveries = new AtomicLong();
+    private final AtomicLong sequence = new AtomicLong();
+    private volatile boolean measuring;
+
+    public static void main(String[] args) throws Exception {
+        new LoadDriver().run();
+    }
+
+    private void run() throws Exception {
+        System.out.printf("Load run %s against %s: %d users, %d senders, %.0f msg/s, %s (+%s warmup)%n",
+                runId, baseUrl, userCount, senderCount, rate, duration, warmup);
+
+        List<Client> clients = login();
+        // Only conversations whose other participant is logged in too: a send to anyone else has no
+        // session to arrive on and would count as never delivered
+        Set<Long> loggedIn = new HashSet<>();
+        clients.forEach(client -> loggedIn.add(client.userId));
+        List<long[]> routes = new ArrayList<>(); // {client index, conversation id}
+        for (int i = 0; i < clients.size(); i++) {
+            for (Map.Entry<Long, Long> conversation : clients.get(i).conversations.entrySet()) {
+                if (loggedIn.contains(conversation.getValue())) {
+                    routes.add(new long[]{i, conversation.getKey()});
+                }
+            }
+        }
+        if (routes.isEmpty()) {
+            throw new IllegalStateException("Logged-in users share no conversations; raise load.users "
+                    + "or seed with the loadgen profile");
+        }
+
+        WebSocketStompClient stompClient = new WebSocketStompClient(
+                new SockJsClient(List.of(new WebSocketTransport(new StandardWebSocketClient()))));
+        stompClient.setMessageConverter(new MappingJackson2MessageConverter());
+        List<StompSession> sessions = connect(stompClient, clients);
+        System.out.printf("Connected %d STOMP sessions over %d conversation routes%n", sessions.size(), routes.size());
+
+        ExecutorService senders = Executors.newFixedThreadPool(senderCount);
+        long startNanos = System.nanoTime();
+        long measureFromNanos = startNanos + warmup.toNanos();
+        long endNanos = measureFromNanos + duration.toNanos();
+        for (int s = 0; s < senderCount; s++) {
+            senders.submit(() -> sendLoop(clients, routes, startNanos, measureFromNanos, endNanos));
+        }
+        senders.shutdown();
+        senders.awaitTermination(warmup.plus(duration).plusMinutes(1).toMillis(), TimeUnit.MILLISECONDS);
+
+        // Let in-flight broadcasts arrive before counting what was never delivered
+        Thread.sleep(drain.toMillis());
+        measuring = false;
+        sessions.forEach(StompSession::disconnect);
+        stompClient.stop();
+
+        report(Duration.ofNanos(endNanos - measureFromNanos));
+    }
+
+    private List<Client> login() throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(Math.min(32, userCount));
+        List<Future<Client>> futures = new ArrayList<>(userCount);
+        for (int i = 0; i < userCount; i++) {
+            int index = i;
+            futures.add(pool.submit(() -> loginOne(index)));
+        }
+        List<Client> clients = new ArrayList<>(userCount);
+        for (Future<Client> future : futures) {
+            clients.add(future.get());
+        }
+        pool.shutdown();
+        return clients;
+    }
+
+    private Client loginOne(int index) throws Exception {
+        ObjectNode login = objectMapper.createObjectNode();
+        login.put("phone", LoadDataGenerator.phoneFor(index));
+        login.put("password", password);
+        HttpResponse<String> response = http.send(HttpRequest.newBuilder(URI.create(baseUrl + "/api/auth/login"))
+                        .header("Content-Type", "application/json")
+                        .POST(HttpRequest.BodyPublishers.ofString(objectMapper.writeValueAsString(login)))
+                        .build(),
+                HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() != 200) {
+            throw new IllegalStateException("Login failed for user " + index + ": HTTP " + response.statusCode());
+        }
+        JsonNode auth = objectMapper.readTree(response.body());
+        String token = auth.path("token").asText();
+        long userId = auth.path("user").path("id").asLong();
+
+        HttpResponse<String> inbox = http.send(HttpRequest.newBuilder(URI.create(baseUrl + "/api/conversations"))
+                        .header("Authorization", "Bearer " + token)
+                        .GET()
+                        .build(),
+                HttpResponse.BodyHandlers.ofString());
+        Map<Long, Long> conversations = new LinkedHashMap<>();
+        for (JsonNode conversation : objectMapper.readTree(inbox.body())) {
+            long otherId = 0;
+            for (JsonNode participantId : conversation.path("participantIds")) {
+                if (participantId.asLong() != userId) {
+                    otherId = participantId.asLong();
+                }
+            }
+            conversations.put(conversation.path("id").asLong(), otherId);
+        }
+        return new Client(userId, token, conversations);
+    }
+
+    private List<StompSession> connect(WebSocketStompClient stompClient, List<Client> clients) throws Exception {
+        List<StompSession> sessions = new ArrayList<>(clients.size());
+        for (Client client : clients) {
+            StompHeaders connectHeaders = new StompHeaders();
+            connectHeaders.add("Authorization", "Bearer " + client.token);
+            StompSession session = stompClient.connectAsync(baseUrl + "/ws", new WebSocketHttpHeaders(),
+                    connectHeaders, new StompSessionHandlerAdapter() {}).get(10, TimeUnit.SECONDS);
+            StompFrameHandler handler = new StompFrameHandler() {
+                @Override
+                public Type getPayloadType(StompHeaders headers) {
+                    return JsonNode.class;
+                }
+
+                @Override
+                public void handleFrame(StompHeaders headers, Object payload) {
+                    JsonNode frame = (JsonNode) payload;
+                    if (!userQueue) {
+                        onDelivery(client, frame);
+                    } else if ("message".equals(frame.path("type").asText())) {
+                        onDelivery(client, frame.path("payload"));
+                    }
+                }
+            };
+            if (userQueue) {
+                session.subscribe("/user/queue/events", handler);
+            } else {
+                for (Long conversationId : client.conversations.keySet()) {
+                    session.subscribe("/topic/conversations/" + conversationId, handler);
+                }
+            }
+            sessions.add(session);
+        }
+        return sessions;
+    }
+
+    private void sendLoop(List<Client> clients, List<long[]> routes,
+                          long startNanos, long measureFromNanos, long endNanos) {
+        long intervalNanos = rate > 0 ? (long) (senderCount * 1_000_000_000L / rate) : 0;
+        long next = startNanos + ThreadLocalRandom.current().nextLong(Math.max(1, intervalNanos));
+        while (System.nanoTime() < endNanos) {
+            if (intervalNanos > 0) {
+                long wait = next - System.nanoTime();
+                if (wait > 0) {
+                    try {
+                        TimeUnit.NANOSECONDS.sleep(wait);
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                next += intervalNanos;
+            }
+
+            long[] route = routes.get(ThreadLocalRandom.current().nextInt(routes.size()));
+            Client client = clients.get((int) route[0]);
+            String nonce = "load-" + runId + "-" + sequence.incrementAndGet();
+            long sentAt = System.nanoTime();
+            boolean measured = sentAt >= measureFromNanos;
+            if (measured) {
+                measuring = true;
+            }
+            pending.put(nonce, new PendingSend(sentAt, measured));
+
+            try {
+                ObjectNode body = objectMapper.createObjectNode();
+                body.put("body", "Load test message " + nonce);
+                body.put("clientNonce", nonce);
+                HttpResponse<Void> response = http.send(
+                        HttpRequest.newBuilder(URI.create(baseUrl + "/api/conversations/" + route[1] + "/messages"))
+                                .header("Authorization", "Bearer " + client.token)
+                                .header("Content-Type", "application/json")
+                                .timeout(Duration.ofSeconds(30))
+                                .POST(HttpRequest.BodyPublishers.ofString(objectMapper.writeValueAsString(body)))
+                                .build(),
+                        HttpResponse.BodyHandlers.discarding());
+                if (response.statusCode() == 200) {
+                    if (measured) {
+                        sendsOk.incrementAndGet();
+                        sendLatency.record((System.nanoTime() - sentAt) / 1000);
+                    }
+                } else {
+                    pending.remove(nonce);
+                    if (measured) {
+                        sendsFailed.incrementAndGet();
+                    }
+                }
+            } catch (Exception e) {
+                pending.remove(nonce);
+                if (measured) {
+                    sendsFailed.incrementAndGet();
+                }
+            }
+        }
+    }
+
+    private void onDelivery(Client receiver, JsonNode message) {
+        long receivedAt = System.nanoTime();
+        // The sender's own sessions get a copy too; only the recipient's copy is a delivery
+        if (message.path("senderId").asLong() == receiver.userId) {
+            return;
+        }
+        String nonce = message.path("clientNonce").asText(null);
+        PendingSend send = nonce != null ? pending.get(nonce) : null;
+        if (send == null || !send.measured || !measuring) {
+            return;
+        }
+        deliveries.incrementAndGet();
+        received.add(nonce);
+        deliveryLatency.record((receivedAt - send.sentAt) / 1000);
+    }
+
+    private void report(Duration measured) throws Exception {
+        double seconds = measured.toMillis() / 1000.0;
+        LatencyRecorder.Summary send = sendLatency.summarize();
+        LatencyRecorder.Summary delivery = deliveryLatency.summarize();
+        long undelivered = Math.max(0, sendsOk.get() - received.size());
+
+        System.out.println();
+        System.out.printf("Measured window: %.1fs%n", seconds);
+        System.out.printf("Sends:      ok=%d failed=%d throughput=%.1f msg/s%n",
+                sendsOk.get(), sendsFailed.get(), sendsOk.get() / seconds);
+        System.out.printf("Deliveries: %d (%.1f/s), sends never delivered=%d%n",
+                deliveries.get(), deliveries.get() / seconds, undelivered);
+        System.out.println("REST send latency:        " + send);
+        System.out.println("Send-to-receive latency:  " + delivery);
+
+        if (output != null) {
+            ObjectNode summary = objectMapper.createObjectNode();
+            summary.put("runId", runId);
+            summary.put("users", userCount);
+            summary.put("senders", senderCount);
+            summary.put("targetRate", rate);
+            summary.put("windowSeconds", seconds);
+            summary.put("sendsOk", sendsOk.get());
+            summary.put("sendsFailed", sendsFailed.get());
+            summary.put("sendThroughput", sendsOk.get() / seconds);
+            summary.put("deliveries", deliveries.get());
+            summary.put("undelivered", undelivered);
+            summary.set("sendLatencyMicros", objectMapper.valueToTree(send));
+            summary.set("deliveryLatencyMicros", objectMapper.valueToTree(delivery));
+            File file = new File(output);
+            file.getParentFile().mkdirs();
+            objectMapper.enable(SerializationFeature.INDENT_OUTPUT).writeValue(file, summary);
+            System.out.println("Summary written to " + file);
+        }
+    }
+
+    // conversations: conversation id -> the other participant's user id
+    private record Client(long userId, String token, Map<Long, Long> conversations) {
+    }
+
+    private record PendingSend(long sentAt, boolean measured) {
+    }
+}
@@ -0,0 +1,24 @@
+package com.pigeon.messenger.config;
+
+import com.pigeon.messenger.service.broadcast.RedisBroadcastService;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+
+@Configuration
+@ConditionalOnProperty(name = "pigeon.broadcast.mode", havingValue = "redis")
+public class BroadcastConfig {
+
+    @Bean
+    public RedisMessageListenerContainer broadcastListenerContainer(RedisConnectionFactory connectionFactory,
+                                                                    RedisBroadcastService broadcastService) {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(connectionFactory);
+        container.addMessageListener(broadcastService, new ChannelTopic(broadcastService.getChannel()));
+        container.addMessageListener(broadcastService, new ChannelTopic(broadcastService.getNodeChannel()));
+        return container;
+    }
+}
@@ -103,6 +103,7 @@ public class DemoDataInitializer implements CommandLineRunner {
 
         // Update last message
         conversation.setLastMessageId(msg3.getId());
+        conversation.setLastMessageCreatedAt(msg3.getCreatedAt());
         conversationRepository.save(conversation);
     }
 
@@ -0,0 +1,236 @@
+package com.pigeon.messenger.config;
+
+import com.pigeon.messenger.service.history.MessagePartitionManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.context.annotation.Profile;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Component;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+// Synthetic data set for load testing (profile "loadgen"): N users with one pigeon each, a conversation
+// graph where a few users take part in most conversations, and M messages concentrated on a few hot
+// conversations. Rows go in through JDBC batches rather than JPA, and everything is derived from the
+// seed, so the load driver can recompute phone numbers from a user's index.
+@Component
+@Profile("loadgen")
+public class LoadDataGenerator implements CommandLineRunner {
+
+    private static final Logger log = LoggerFactory.getLogger(LoadDataGenerator.class);
+
+    private static final String[] SPRITES = {"sprite_blue", "sprite_gray", "sprite_white"};
+    private static final String[] TRAITS = {"fast", "reliable", "gentle"};
+
+    // Most frequent message words; ranks past these are "term<rank>"
+    private static final String[] COMMON_WORDS = {
+            "pigeon", "weather", "tomorrow", "dinner", "flight", "coffee", "tonight", "weekend", "rain",
+            "meeting", "home", "train", "lunch", "office", "sunny", "park", "birthday", "movie", "music",
+            "city", "window", "garden", "letter", "breakfast", "storm", "holiday", "station", "bread",
+            "concert", "river", "market", "library"};
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PasswordEncoder passwordEncoder;
+
+    @Autowired
+    private MessagePartitionManager partitionManager;
+
+    @Value("${pigeon.loadgen.users:10000}")
+    private int userCount;
+
+    @Value("${pigeon.loadgen.conversations:50000}")
+    private int conversationCount;
+
+    @Value("${pigeon.loadgen.messages:1000000}")
+    private int messageCount;
+
+    @Value("${pigeon.loadgen.zipf-exponent:1.1}")
+    private double zipfExponent;
+
+    @Value("${pigeon.loadgen.vocabulary:50000}")
+    private int vocabularySize;
+
+    @Value("${pigeon.loadgen.words-per-message:8}")
+    private int wordsPerMessage;
+
+    @Value("${pigeon.loadgen.batch-size:1000}")
+    private int batchSize;
+
+    @Value("${pigeon.loadgen.history:P30D}")
+    private Duration history;
+
+    @Value("${pigeon.loadgen.seed:42}")
+    private long seed;
+
+    @Value("${pigeon.loadgen.password:password}")
+    private String password;
+
+    // +1 and a 3-digit area code from 201-999 (spreads users over the weather patterns), then the index
+    public static String phoneFor(int userIndex) {
+        return String.format("+1%03d%07d", 201 + userIndex % 799, userIndex);
+    }
+
+    // Word of the given Zipf rank in generated message bodies, so searches can pick common or rare terms
+    public static String wordFor(int rank) {
+        return rank < COMMON_WORDS.length ? COMMON_WORDS[rank] : "term" + rank;
+    }
+
+    @Override
+    public void run(String... args) {
+        Integer existing = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM users WHERE phone = ?", Integer.class, phoneFor(0));
+        if (existing != null && existing > 0) {
+            log.info("Load test data already exists. Skipping generation.");
+            return;
+        }
+
+        Random random = new Random(seed);
+        long started = System.currentTimeMillis();
+
+        List<Long> userIds = insertUsers();
+        log.info("Generated {} users with pigeons", userIds.size());
+
+        List<long[]> conversations = insertConversations(userIds, random);
+        log.info("Generated {} conversations", conversations.size());
+
+        insertMessages(conversations, random);
+        log.info("Generated {} messages", messageCount);
+
+        finishConversations();
+        log.info("Load test data generated in {} ms", System.currentTimeMillis() - started);
+    }
+
+    private List<Long> insertUsers() {
+        // BCrypt is deliberately slow, so every generated user shares one hash
+        String passwordHash = passwordEncoder.encode(password);
+        List<Long> userIds = allocateIds("users_id_seq", userCount);
+        List<Long> pigeonIds = allocateIds("pigeons_id_seq", userCount);
+
+        List<Object[]> users = new ArrayList<>(batchSize);
+        List<Object[]> pigeons = new ArrayList<>(batchSize);
+        for (int i = 0; i < userCount; i++) {
+            String displayName = "Load User " + i;
+            users.add(new Object[]{userIds.get(i), phoneFor(i), displayName, passwordHash,
+                    "https://ui-avatars.com/api/?name=LoadUser" + i});
+            pigeons.add(new Object[]{pigeonIds.get(i), userIds.get(i), "Pigeon " + i,
+                    SPRITES[i % SPRITES.length], TRAITS[i % TRAITS.length]});
+            if (users.size() == batchSize || i == userCount - 1) {
+                jdbcTemplate.batchUpdate("INSERT INTO users (id, phone, display_name, password_hash, avatar_url) " +
+                        "VALUES (?, ?, ?, ?, ?)", users);
+                jdbcTemplate.batchUpdate("INSERT INTO pigeons (id, user_id, name, sprite_key, trait) " +
+                        "VALUES (?, ?, ?, ?, ?)", pigeons);
+                users.clear();
+                pigeons.clear();
+            }
+        }
+        jdbcTemplate.update("UPDATE users u SET active_pigeon_id = p.id FROM pigeons p " +
+                "WHERE p.user_id = u.id AND u.id BETWEEN ? AND ?", userIds.get(0), userIds.get(userIds.size() - 1));
+        return userIds;
+    }
+
+    // One side of each conversation is Zipf-distributed (popular users are in many conversations), the
+    // other uniform. Pairs are stored with the lower id first and never repeated.
+    private List<long[]> insertConversations(List<Long> userIds, Random random) {
+        ZipfSampler popularity = new ZipfSampler(userIds.size(), zipfExponent);
+        Set<Long> seenPairs = new HashSet<>();
+        List<long[]> pairs = new ArrayList<>(conversationCount);
+        long maxPairs = (long) userIds.size() * (userIds.size() - 1) / 2;
+        int attempts = 0;
+        while (pairs.size() < Math.min(conversationCount, maxPairs) && attempts < conversationCount * 20) {
+            attempts++;
+            int a = popularity.sample(random);
+            int b = random.nextInt(userIds.size());
+            if (a == b) {
+                continue;
+            }
+            int low = Math.min(a, b);
+            int high = Math.max(a, b);
+            if (seenPairs.add((long) low * userIds.size() + high)) {
+                pairs.add(new long[]{0, userIds.get(low), userIds.get(high)});
+            }
+        }
+
+        List<Long> conversationIds = allocateIds("conversations_id_seq", pairs.size());
+        List<Object[]> batch = new ArrayList<>(batchSize);
+        for (int i = 0; i < pairs.size(); i++) {
+            long[] pair = pairs.get(i);
+            pair[0] = conversationIds.get(i);
+            batch.add(new Object[]{pair[0], pair[1], pair[2]});
+            if (batch.size() == batchSize || i == pairs.size() - 1) {
+                jdbcTemplate.batchUpdate("INSERT INTO conversations (id, participant_a_id, participant_b_id) " +
+                        "VALUES (?, ?, ?)", batch);
+                batch.clear();
+            }
+        }
+        return pairs;
+    }
+
+    // Messages land on conversations by Zipf rank, so a handful of threads are very long; timestamps
+    // increase with the message index across the history window. Bodies are Zipf-drawn words, giving
+    // full-text search a realistic mix of very common and very rare terms.
+    private void insertMessages(List<long[]> conversations, Random random) {
+        if (conversations.isEmpty()) {
+            return;
+        }
+        ZipfSampler activity = new ZipfSampler(conversations.size(), zipfExponent);
+        ZipfSampler vocabulary = new ZipfSampler(vocabularySize, 1.0);
+        LocalDateTime start = LocalDateTime.now().minus(history);
+        // The history reaches back past the months a fresh database has partitions for
+        partitionManager.ensurePartitions(start.toLocalDate(), LocalDate.now());
+        long stepMillis = Math.max(1, history.toMillis() / Math.max(1, messageCount));
+
+        List<Object[]> batch = new ArrayList<>(batchSize);
+        for (int i = 0; i < messageCount; i++) {
+            long[] conversation = conversations.get(activity.sample(random));
+            long senderId = random.nextBoolean() ? conversation[1] : conversation[2];
+            StringBuilder body = new StringBuilder("Load message ").append(i).append(':');
+            for (int w = 0; w < wordsPerMessage; w++) {
+                body.append(' ').append(wordFor(vocabulary.sample(random)));
+            }
+            batch.add(new Object[]{conversation[0], senderId, body.toString(),
+                    Timestamp.valueOf(start.plus(Duration.ofMillis(stepMillis * i)))});
+            if (batch.size() == batchSize || i == messageCount - 1) {
+                jdbcTemplate.batchUpdate("INSERT INTO messages (conversation_id, sender_id, body, created_at, status) " +
+                        "VALUES (?, ?, ?, ?, 'delivered')", batch);
+                batch.clear();
+            }
+        }
+    }
+
+    // Inbox previews point at the newest message, and generated history counts as delivered and read
+    private void finishConversations() {
+        // Each conversation's history is inserted oldest first, so its highest id is also its latest created_at
+        jdbcTemplate.update("UPDATE conversations c SET last_message_id = m.max_id, " +
+                "last_message_created_at = m.max_created, updated_at = m.max_created " +
+                "FROM (SELECT conversation_id, MAX(id) AS max_id, MAX(created_at) AS max_created " +
+                "      FROM messages GROUP BY conversation_id) m " +
+                "WHERE m.conversation_id = c.id AND c.last_message_id IS NULL");
+        jdbcTemplate.update("INSERT INTO conversation_read_state " +
+                "(conversation_id, user_id, unread_count, last_delivered_message_id, last_read_message_id) " +
+                "SELECT c.id, p.user_id, 0, c.last_message_id, c.last_message_id " +
+                "FROM conversations c " +
+                "CROSS JOIN LATERAL (VALUES (c.participant_a_id), (c.participant_b_id)) AS p(user_id) " +
+                "WHERE c.last_message_id IS NOT NULL " +
+                "ON CONFLICT (conversation_id, user_id) DO NOTHING");
+    }
+
+    private List<Long> allocateIds(String sequence, int count) {
+        return jdbcTemplate.queryForList(
+                "SELECT nextval('" + sequence + "') FROM generate_series(1, ?)", Long.class, count);
+    }
+}
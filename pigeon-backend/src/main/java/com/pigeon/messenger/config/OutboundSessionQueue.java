@@ -0,0 +1,224 @@
+package com.pigeon.messenger.config;
+
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.WebSocketSessionDecorator;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.concurrent.Executor;
+
+// Per-session outbound buffer in front of the socket. sendMessage only enqueues, so the broker's outbound
+// channel threads never block on a slow client; a writer task per session drains the queue in order.
+// When the buffered bytes exceed the limit the slow-consumer policy decides what gives:
+//   DROP      - discard the oldest queued broadcasts
+//   COALESCE  - keep only the newest receipt per (conversation, reader), then drop oldest
+//   TERMINATE - close the session, as Spring does by default
+// Only MESSAGE frames (those with a destination) are ever discarded; clients recover them from history.
+public class OutboundSessionQueue extends WebSocketSessionDecorator {
+
+    public enum Policy { DROP, COALESCE, TERMINATE }
+
+    private final Executor writer;
+    private final Policy policy;
+    private final int bufferSizeLimit;
+    private final long sendTimeLimitNanos;
+    private final WebSocketOutboundQueues stats;
+
+    private final Deque<Frame> queue = new ArrayDeque<>();
+    private int bufferedBytes;
+    private boolean draining;
+    private boolean terminated;
+    private long sendStartedAt;
+
+    public OutboundSessionQueue(WebSocketSession delegate, Executor writer, Policy policy, int bufferSizeLimit,
+                                long sendTimeLimitNanos, WebSocketOutboundQueues stats) {
+        super(delegate);
+        this.writer = writer;
+        this.policy = policy;
+        this.bufferSizeLimit = bufferSizeLimit;
+        this.sendTimeLimitNanos = sendTimeLimitNanos;
+        this.stats = stats;
+    }
+
+    @Override
+    public void sendMessage(WebSocketMessage<?> message) {
+        Frame frame = new Frame(message);
+        boolean startWriter;
+        synchronized (this) {
+            if (terminated) {
+                return;
+            }
+            if (sendStartedAt != 0 && System.nanoTime() - sendStartedAt > sendTimeLimitNanos) {
+                terminate("send time limit exceeded");
+                return;
+            }
+            enqueue(frame);
+            if (terminated) {
+                return;
+            }
+            startWriter = !draining;
+            draining = true;
+        }
+        stats.recordQueueDepth(queueDepth());
+        if (startWriter) {
+            writer.execute(this::drain);
+        }
+    }
+
+    public synchronized int queueDepth() {
+        return queue.size();
+    }
+
+    public synchronized int bufferedBytes() {
+        return bufferedBytes;
+    }
+
+    // Caller holds the monitor
+    private void enqueue(Frame frame) {
+        if (policy == Policy.COALESCE && frame.coalescable()) {
+            for (Iterator<Frame> it = queue.iterator(); it.hasNext(); ) {
+                Frame queued = it.next();
+                if (frame.coalesceKey.equals(queued.coalesceKey)) {
+                    it.remove();
+                    bufferedBytes -= queued.size;
+                    stats.coalesced();
+                    break;
+                }
+            }
+        }
+        queue.addLast(frame);
+        bufferedBytes += frame.size;
+
+        while (bufferedBytes > bufferSizeLimit && queue.size() > 1) {
+            if (policy == Policy.TERMINATE) {
+                terminate("send buffer limit exceeded");
+                return;
+            }
+            Frame victim = policy == Policy.COALESCE ? firstMatching(true) : null;
+            if (victim == null) {
+                victim = firstMatching(false);
+            }
+            if (victim == null) {
+                // Nothing droppable left (only control frames); let the buffer run over
+                break;
+            }
+            queue.remove(victim);
+            bufferedBytes -= victim.size;
+            stats.dropped();
+        }
+    }
+
+    // Oldest droppable frame, optionally only among coalescable ones; never the frame just enqueued
+    private Frame firstMatching(boolean coalescableOnly) {
+        for (Frame queued : queue) {
+            if (queued == queue.peekLast()) {
+                return null;
+            }
+            if (queued.destination != null && (!coalescableOnly || queued.coalescable())) {
+                return queued;
+            }
+        }
+        return null;
+    }
+
+    private void drain() {
+        while (true) {
+            Frame frame;
+            synchronized (this) {
+                frame = terminated ? null : queue.pollFirst();
+                if (frame == null) {
+                    draining = false;
+                    sendStartedAt = 0;
+                    return;
+                }
+                bufferedBytes -= frame.size;
+                sendStartedAt = System.nanoTime();
+            }
+            try {
+                getDelegate().sendMessage(frame.message);
+            } catch (IOException | RuntimeException e) {
+                synchronized (this) {
+                    terminate("send failed");
+                }
+            }
+        }
+    }
+
+    // Caller holds the monitor
+    private void terminate(String reason) {
+        if (terminated) {
+            return;
+        }
+        terminated = true;
+        queue.clear();
+        bufferedBytes = 0;
+        stats.terminated();
+        writer.execute(() -> {
+            try {
+                getDelegate().close(CloseStatus.SESSION_NOT_RELIABLE.withReason(reason));
+            } catch (IOException e) {
+                // Already gone
+            }
+        });
+    }
+
+    private static class Frame {
+        private final WebSocketMessage<?> message;
+        private final String destination;
+        private final String coalesceKey;
+        private final int size;
+
+        private Frame(WebSocketMessage<?> message) {
+            this.message = message;
+            this.size = message.getPayloadLength();
+            String payload = message instanceof TextMessage text ? text.getPayload() : null;
+            this.destination = payload != null ? destinationOf(payload) : null;
+            this.coalesceKey = destination == null ? null
+                    : destination.endsWith("/receipts") ? destination + "#" + numberAfter(payload, "\"userId\":")
+                    // On the per-user queue receipts share the destination with everything else
+                    : destination.endsWith("/queue/events") && payload.contains("\"type\":\"receipt\"")
+                            ? destination + "#" + numberAfter(payload, "\"conversationId\":")
+                                    + "#" + numberAfter(payload, "\"userId\":")
+                            : null;
+        }
+
+        // Receipts are forward-only watermarks, so a newer one from the same reader supersedes an older one
+        private boolean coalescable() {
+            return coalesceKey != null;
+        }
+
+        // Digits following the first occurrence of key, e.g. "userId": in the JSON body
+        private static String numberAfter(String frame, String key) {
+            int start = frame.indexOf(key);
+            if (start < 0) {
+                return "";
+            }
+            start += key.length();
+            int end = start;
+            while (end < frame.length() && Character.isDigit(frame.charAt(end))) {
+                end++;
+            }
+            return frame.substring(start, end);
+        }
+
+        // destination header of a STOMP MESSAGE frame; null for every other frame
+        private static String destinationOf(String frame) {
+            if (!frame.startsWith("MESSAGE\n")) {
+                return null;
+            }
+            int headersEnd = frame.indexOf("\n\n");
+            int start = frame.indexOf("\ndestination:");
+            if (start < 0 || (headersEnd >= 0 && start > headersEnd)) {
+                return null;
+            }
+            start += "\ndestination:".length();
+            int end = frame.indexOf('\n', start);
+            return end < 0 ? null : frame.substring(start, end);
+        }
+    }
+}
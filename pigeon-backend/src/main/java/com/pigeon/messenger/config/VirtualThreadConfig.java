@@ -0,0 +1,60 @@
+package com.pigeon.messenger.config;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+
+import java.time.Duration;
+
+// Opt-in virtual-thread mode (spring.threads.virtual.enabled=true). Spring Boot moves Tomcat request
+// handling onto virtual threads and WebSocketConfig does the same for the STOMP channels. The JDBC pool
+// becomes the real limit, so this adds the guardrail in front of it.
+@Configuration
+@ConditionalOnProperty(name = "spring.threads.virtual.enabled", havingValue = "true")
+public class VirtualThreadConfig {
+
+    private static final Logger log = LoggerFactory.getLogger(VirtualThreadConfig.class);
+
+    @Value("${spring.datasource.hikari.maximum-pool-size:10}")
+    private int connectionPoolSize;
+
+    // 0 = derive from the pool size
+    @Value("${pigeon.virtual-threads.max-concurrent-requests:0}")
+    private int maxConcurrentRequests;
+
+    @Value("${pigeon.virtual-threads.requests-per-connection:8}")
+    private int requestsPerConnection;
+
+    @Value("${pigeon.virtual-threads.acquire-timeout:PT2S}")
+    private Duration acquireTimeout;
+
+    @Bean
+    public FilterRegistrationBean<ConcurrencyLimitFilter> concurrencyLimitFilter(MeterRegistry meterRegistry) {
+        // Requests spend most of their time outside the pool (auth, serialization, waiting on the send
+        // batcher), so several in-flight requests share each connection
+        int limit = maxConcurrentRequests > 0 ? maxConcurrentRequests : connectionPoolSize * requestsPerConnection;
+        if (limit < connectionPoolSize) {
+            log.warn("pigeon.virtual-threads.max-concurrent-requests={} is below the connection pool size {}; "
+                    + "connections will sit idle", limit, connectionPoolSize);
+        }
+        log.info("Virtual-thread mode: at most {} concurrent API requests over {} database connections",
+                limit, connectionPoolSize);
+
+        ConcurrencyLimitFilter filter = new ConcurrencyLimitFilter(limit, acquireTimeout);
+        Gauge.builder("pigeon.http.inflight", filter, ConcurrencyLimitFilter::getInFlight)
+                .description("API requests holding a concurrency permit")
+                .register(meterRegistry);
+
+        FilterRegistrationBean<ConcurrencyLimitFilter> registration = new FilterRegistrationBean<>(filter);
+        registration.setOrder(Ordered.HIGHEST_PRECEDENCE + 10);
+        registration.addUrlPatterns("/api/*");
+        return registration;
+    }
+}
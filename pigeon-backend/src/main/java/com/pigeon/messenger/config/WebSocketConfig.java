@@ -1,15 +1,68 @@
 package com.pigeon.messenger.config;
 
+import com.pigeon.messenger.security.StompAuthChannelInterceptor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.messaging.simp.config.ChannelRegistration;
 import org.springframework.messaging.simp.config.MessageBrokerRegistry;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.util.unit.DataSize;
 import org.springframework.web.socket.config.annotation.EnableWebSocketMessageBroker;
 import org.springframework.web.socket.config.annotation.StompEndpointRegistry;
 import org.springframework.web.socket.config.annotation.WebSocketMessageBrokerConfigurer;
+import org.springframework.web.socket.config.annotation.WebSocketTransportRegistration;
+
+import java.time.Duration;
 
 @Configuration
 @EnableWebSocketMessageBroker
 public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
 
+    private static final String[] ALLOWED_ORIGINS = {"http://localhost:5173", "http://localhost:3000"};
+
+    @Autowired
+    private WebSocketOutboundQueues outboundQueues;
+
+    @Autowired
+    private StompAuthChannelInterceptor stompAuthInterceptor;
+
+    @Value("${spring.threads.virtual.enabled:false}")
+    private boolean virtualThreads;
+
+    @Value("${pigeon.websocket.virtual-channel-concurrency:1000}")
+    private int virtualChannelConcurrency;
+
+    @Value("${pigeon.websocket.inbound.core-pool-size:8}")
+    private int inboundCorePoolSize;
+
+    @Value("${pigeon.websocket.inbound.max-pool-size:32}")
+    private int inboundMaxPoolSize;
+
+    @Value("${pigeon.websocket.inbound.queue-capacity:10000}")
+    private int inboundQueueCapacity;
+
+    @Value("${pigeon.websocket.outbound.core-pool-size:8}")
+    private int outboundCorePoolSize;
+
+    @Value("${pigeon.websocket.outbound.max-pool-size:16}")
+    private int outboundMaxPoolSize;
+
+    @Value("${pigeon.websocket.outbound.queue-capacity:100000}")
+    private int outboundQueueCapacity;
+
+    @Value("${pigeon.websocket.message-size-limit:64KB}")
+    private DataSize messageSizeLimit;
+
+    @Value("${pigeon.websocket.send-buffer-size-limit:512KB}")
+    private DataSize sendBufferSizeLimit;
+
+    @Value("${pigeon.websocket.send-time-limit:PT10S}")
+    private Duration sendTimeLimit;
+
+    @Value("${pigeon.websocket.time-to-first-message:PT30S}")
+    private Duration timeToFirstMessage;
+
     @Override
     public void configureMessageBroker(MessageBrokerRegistry config) {
         config.enableSimpleBroker("/topic", "/queue");
@@ -18,8 +71,61 @@ public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
 
     @Override
     public void registerStompEndpoints(StompEndpointRegistry registry) {
+        // Native WebSocket for capable clients, no SockJS framing
+        registry.addEndpoint("/ws-native")
+                .setAllowedOrigins(ALLOWED_ORIGINS);
         registry.addEndpoint("/ws")
-                .setAllowedOrigins("http://localhost:5173", "http://localhost:3000")
+                .setAllowedOrigins(ALLOWED_ORIGINS)
                 .withSockJS();
     }
+
+    // Writes go through a per-session OutboundSessionQueue, so Spring's own send limits below are only a
+    // backstop; the queue applies the slow-consumer policy against the same buffer and time limits
+    @Override
+    public void configureWebSocketTransport(WebSocketTransportRegistration registration) {
+        registration.setMessageSizeLimit((int) messageSizeLimit.toBytes());
+        registration.setSendBufferSizeLimit((int) sendBufferSizeLimit.toBytes());
+        registration.setSendTimeLimit((int) sendTimeLimit.toMillis());
+        registration.setTimeToFirstMessage((int) timeToFirstMessage.toMillis());
+        registration.addDecoratorFactory(outboundQueues::decorate);
+    }
+
+    // In virtual-thread mode the inbound and outbound channels run on virtual threads too, so a handler
+    // blocked on JPA or a slow client write parks cheaply instead of holding one of a few platform threads.
+    // The auth interceptor runs on the transport thread, before any frame is dispatched.
+    @Override
+    public void configureClientInboundChannel(ChannelRegistration registration) {
+        registration.interceptors(stompAuthInterceptor);
+        if (virtualThreads) {
+            registration.taskExecutor(virtualChannelExecutor("ws-inbound-"));
+        } else {
+            registration.taskExecutor()
+                    .corePoolSize(inboundCorePoolSize)
+                    .maxPoolSize(inboundMaxPoolSize)
+                    .queueCapacity(inboundQueueCapacity);
+        }
+    }
+
+    // Outbound work is only serialization plus an enqueue onto the session queue, so a small pool suffices
+    @Override
+    public void configureClientOutboundChannel(ChannelRegistration registration) {
+        if (virtualThreads) {
+            registration.taskExecutor(virtualChannelExecutor("ws-outbound-"));
+        } else {
+            registration.taskExecutor()
+                    .corePoolSize(outboundCorePoolSize)
+                    .maxPoolSize(outboundMaxPoolSize)
+                    .queueCapacity(outboundQueueCapacity);
+        }
+    }
+
+    private ThreadPoolTaskExecutor virtualChannelExecutor(String threadNamePrefix) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setVirtualThreads(true);
+        executor.setThreadNamePrefix(threadNamePrefix);
+        executor.setCorePoolSize(virtualChannelConcurrency);
+        executor.setMaxPoolSize(virtualChannelConcurrency);
+        executor.setAllowCoreThreadTimeOut(true);
+        return executor;
+    }
 }
@@ -0,0 +1,100 @@
+package com.pigeon.messenger.config;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.event.EventListener;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.messaging.SessionConnectedEvent;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+import org.springframework.web.socket.messaging.SessionSubscribeEvent;
+import org.springframework.web.socket.messaging.SessionUnsubscribeEvent;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Live STOMP session and subscription counts, plus how much work is queued on the broker's channel
+// executors. A growing outbound queue means clients are not keeping up with the fan-out.
+@Component
+public class WebSocketMetrics {
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    @Qualifier("clientInboundChannelExecutor")
+    private ThreadPoolTaskExecutor clientInboundExecutor;
+
+    @Autowired
+    @Qualifier("clientOutboundChannelExecutor")
+    private ThreadPoolTaskExecutor clientOutboundExecutor;
+
+    @Autowired
+    @Qualifier("brokerChannelExecutor")
+    private ThreadPoolTaskExecutor brokerExecutor;
+
+    // Subscriptions per session, so a disconnect can release the ones the client never unsubscribed
+    private final Map<String, AtomicInteger> subscriptionsBySession = new ConcurrentHashMap<>();
+    private final AtomicInteger subscriptions = new AtomicInteger();
+
+    @PostConstruct
+    public void init() {
+        Gauge.builder("pigeon.websocket.sessions", subscriptionsBySession, Map::size)
+                .description("Connected STOMP sessions")
+                .register(meterRegistry);
+        Gauge.builder("pigeon.websocket.subscriptions", subscriptions, AtomicInteger::get)
+                .description("Active STOMP subscriptions")
+                .register(meterRegistry);
+        registerQueueDepth("inbound", clientInboundExecutor);
+        registerQueueDepth("outbound", clientOutboundExecutor);
+        registerQueueDepth("broker", brokerExecutor);
+    }
+
+    @EventListener
+    public void onConnected(SessionConnectedEvent event) {
+        subscriptionsBySession.putIfAbsent(sessionId(event.getMessage().getHeaders()), new AtomicInteger());
+    }
+
+    @EventListener
+    public void onSubscribe(SessionSubscribeEvent event) {
+        AtomicInteger count = subscriptionsBySession.get(sessionId(event.getMessage().getHeaders()));
+        if (count != null) {
+            count.incrementAndGet();
+            subscriptions.incrementAndGet();
+        }
+    }
+
+    @EventListener
+    public void onUnsubscribe(SessionUnsubscribeEvent event) {
+        AtomicInteger count = subscriptionsBySession.get(sessionId(event.getMessage().getHeaders()));
+        if (count != null && count.getAndUpdate(n -> Math.max(0, n - 1)) > 0) {
+            subscriptions.decrementAndGet();
+        }
+    }
+
+    @EventListener
+    public void onDisconnect(SessionDisconnectEvent event) {
+        AtomicInteger count = subscriptionsBySession.remove(event.getSessionId());
+        if (count != null) {
+            subscriptions.addAndGet(-count.get());
+        }
+    }
+
+    private void registerQueueDepth(String channel, ThreadPoolTaskExecutor executor) {
+        Gauge.builder("pigeon.websocket.channel.queue.depth", executor,
+                        e -> e.getThreadPoolExecutor().getQueue().size())
+                .description("Messages waiting on a STOMP channel executor")
+                .tag("channel", channel)
+                .register(meterRegistry);
+    }
+
+    private static String sessionId(MessageHeaders headers) {
+        return StompHeaderAccessor.getSessionId(headers);
+    }
+}
@@ -0,0 +1,124 @@
+package com.pigeon.messenger.config;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.WebSocketHandlerDecorator;
+
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// Wraps every WebSocket session in an OutboundSessionQueue and exports per-session queue metrics.
+// Writers run on virtual threads: a writer blocked on a stalled socket costs almost nothing and
+// never holds up delivery to other sessions.
+@Component
+public class WebSocketOutboundQueues {
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${pigeon.websocket.slow-consumer-policy:coalesce}")
+    private String slowConsumerPolicy;
+
+    @Value("${pigeon.websocket.send-buffer-size-limit:512KB}")
+    private DataSize sendBufferSizeLimit;
+
+    @Value("${pigeon.websocket.send-time-limit:PT10S}")
+    private Duration sendTimeLimit;
+
+    private final Set<OutboundSessionQueue> sessions = ConcurrentHashMap.newKeySet();
+    private ExecutorService writers;
+    private OutboundSessionQueue.Policy policy;
+    private DistributionSummary queueDepths;
+    private Counter dropped;
+    private Counter coalesced;
+    private Counter terminated;
+
+    @PostConstruct
+    public void init() {
+        writers = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("ws-writer-", 0).factory());
+        policy = OutboundSessionQueue.Policy.valueOf(slowConsumerPolicy.trim().toUpperCase());
+
+        queueDepths = DistributionSummary.builder("pigeon.websocket.session.queue.depth")
+                .description("Frames queued on a session when a new frame is added")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+        Gauge.builder("pigeon.websocket.session.queue.max", sessions,
+                        s -> s.stream().mapToInt(OutboundSessionQueue::queueDepth).max().orElse(0))
+                .description("Deepest outbound queue of any session")
+                .register(meterRegistry);
+        Gauge.builder("pigeon.websocket.session.queue.bytes", sessions,
+                        s -> s.stream().mapToLong(OutboundSessionQueue::bufferedBytes).sum())
+                .description("Bytes buffered for slow sessions")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        dropped = slowConsumerCounter("dropped");
+        coalesced = slowConsumerCounter("coalesced");
+        terminated = slowConsumerCounter("terminated");
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        writers.shutdownNow();
+    }
+
+    public WebSocketHandler decorate(WebSocketHandler handler) {
+        return new WebSocketHandlerDecorator(handler) {
+            private final ConcurrentHashMap<String, OutboundSessionQueue> bySessionId = new ConcurrentHashMap<>();
+
+            @Override
+            public void afterConnectionEstablished(WebSocketSession session) throws Exception {
+                OutboundSessionQueue queued = new OutboundSessionQueue(session, writers, policy,
+                        (int) sendBufferSizeLimit.toBytes(), sendTimeLimit.toNanos(), WebSocketOutboundQueues.this);
+                bySessionId.put(session.getId(), queued);
+                sessions.add(queued);
+                super.afterConnectionEstablished(queued);
+            }
+
+            @Override
+            public void afterConnectionClosed(WebSocketSession session, CloseStatus closeStatus) throws Exception {
+                OutboundSessionQueue queued = bySessionId.remove(session.getId());
+                if (queued != null) {
+                    sessions.remove(queued);
+                }
+                super.afterConnectionClosed(queued != null ? queued : session, closeStatus);
+            }
+        };
+    }
+
+    void recordQueueDepth(int depth) {
+        queueDepths.record(depth);
+    }
+
+    void dropped() {
+        dropped.increment();
+    }
+
+    void coalesced() {
+        coalesced.increment();
+    }
+
+    void terminated() {
+        terminated.increment();
+    }
+
+    private Counter slowConsumerCounter(String action) {
+        return Counter.builder("pigeon.websocket.slow-consumer")
+                .description("Frames or sessions affected by the slow-consumer policy")
+                .tag("action", action)
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,32 @@
+package com.pigeon.messenger.config;
+
+import java.util.Arrays;
+import java.util.Random;
+
+// Draws ranks 0..n-1 with probability proportional to 1 / (rank + 1)^exponent, so a few ranks are
+// very popular and most are rare. Inverse-CDF over a precomputed table: O(n) memory, O(log n) per draw.
+public class ZipfSampler {
+
+    private final double[] cumulative;
+
+    public ZipfSampler(int n, double exponent) {
+        if (n <= 0) {
+            throw new IllegalArgumentException("Zipf population must be positive");
+        }
+        cumulative = new double[n];
+        double sum = 0;
+        for (int rank = 0; rank < n; rank++) {
+            sum += 1.0 / Math.pow(rank + 1, exponent);
+            cumulative[rank] = sum;
+        }
+        for (int rank = 0; rank < n; rank++) {
+            cumulative[rank] /= sum;
+        }
+    }
+
+    public int sample(Random random) {
+        int index = Arrays.binarySearch(cumulative, random.nextDouble());
+        int rank = index >= 0 ? index : -index - 1;
+        return Math.min(rank, cumulative.length - 1);
+    }
+}
@@ -3,10 +3,13 @@ package com.pigeon.messenger.controller;
 import com.pigeon.messenger.dto.*;
 import com.pigeon.messenger.entity.User;
 import com.pigeon.messenger.repository.UserRepository;
+import com.pigeon.messenger.security.AuthenticatedUser;
 import com.pigeon.messenger.security.JwtUtil;
+import com.pigeon.messenger.service.cache.ProfileCache;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.web.bind.annotation.*;
 
@@ -23,6 +26,9 @@ public class AuthController {
     @Autowired
     private JwtUtil jwtUtil;
 
+    @Autowired
+    private ProfileCache profileCache;
+
     @PostMapping("/register")
     public ResponseEntity<?> register(@RequestBody RegisterRequest request) {
         // Check if user already exists
@@ -37,6 +43,7 @@ public class AuthController {
         user.setPasswordHash(passwordEncoder.encode(request.getPassword()));
 
         user = userRepository.save(user);
+        profileCache.evictUser(user.getId());
 
         // Generate JWT token
         String token = jwtUtil.generateToken(user.getPhone(), user.getId());
@@ -59,13 +66,17 @@ public class AuthController {
     }
 
     @GetMapping("/me")
-    public ResponseEntity<UserDTO> getCurrentUser(@RequestHeader("Authorization") String authHeader) {
-        String token = authHeader.substring(7);
-        Long userId = jwtUtil.extractUserId(token);
+    public ResponseEntity<UserDTO> getCurrentUser(@AuthenticationPrincipal AuthenticatedUser currentUser) {
+        // /api/auth/** is public, so the principal is only present when a valid token was sent
+        if (currentUser == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
 
-        User user = userRepository.findById(userId)
-                .orElseThrow(() -> new RuntimeException("User not found"));
+        UserDTO user = profileCache.getUser(currentUser.getUserId());
+        if (user == null) {
+            throw new RuntimeException("User not found");
+        }
 
-        return ResponseEntity.ok(UserDTO.fromEntity(user));
+        return ResponseEntity.ok(user);
     }
 }
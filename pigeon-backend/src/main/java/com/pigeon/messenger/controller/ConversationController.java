@@ -3,15 +3,26 @@ package com.pigeon.messenger.controller;
 import com.pigeon.messenger.dto.*;
 import com.pigeon.messenger.entity.*;
 import com.pigeon.messenger.repository.*;
-import com.pigeon.messenger.security.JwtUtil;
+import com.pigeon.messenger.security.AuthenticatedUser;
+import com.pigeon.messenger.service.ConversationParticipantIndex;
+import com.pigeon.messenger.service.MessageIngestionService;
+import com.pigeon.messenger.service.ReceiptService;
+import com.pigeon.messenger.service.SendDedupeCache;
+import com.pigeon.messenger.service.history.MessageHistoryService;
+import com.pigeon.messenger.service.sync.UserChangeLog;
+import com.pigeon.messenger.service.quota.SendQuotaService;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.data.domain.PageRequest;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
-import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.stream.Collectors;
 
@@ -19,100 +30,204 @@ import java.util.stream.Collectors;
 @RequestMapping("/api/conversations")
 public class ConversationController {
 
+    private static final int MAX_PAGE_SIZE = 100;
+
     @Autowired
     private ConversationRepository conversationRepository;
 
     @Autowired
-    private MessageRepository messageRepository;
+    private UserRepository userRepository;
 
     @Autowired
-    private UserRepository userRepository;
+    private ReceiptService receiptService;
+
+    @Autowired
+    private SendDedupeCache sendDedupeCache;
+
+    @Autowired
+    private MessageIngestionService ingestionService;
+
+    @Autowired
+    private SendQuotaService sendQuotaService;
 
     @Autowired
-    private JwtUtil jwtUtil;
+    private ConversationParticipantIndex participantIndex;
 
-    @Autowired(required = false)
-    private SimpMessagingTemplate messagingTemplate;
+    @Autowired
+    private MessageHistoryService historyService;
+
+    @Autowired
+    private UserChangeLog changeLog;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
 
     @GetMapping
     public ResponseEntity<List<ConversationDTO>> getConversations(
-            @RequestHeader("Authorization") String authHeader) {
+            @AuthenticationPrincipal AuthenticatedUser currentUser) {
 
-        Long userId = jwtUtil.extractUserId(authHeader.substring(7));
+        Long userId = currentUser.getUserId();
 
-        List<Conversation> conversations = conversationRepository.findByUserId(userId);
-
-        List<ConversationDTO> conversationDTOs = conversations.stream()
-                .map(conv -> {
-                    MessageDTO lastMessage = null;
-                    if (conv.getLastMessageId() != null) {
-                        Message msg = messageRepository.findById(conv.getLastMessageId()).orElse(null);
-                        if (msg != null) {
-                            lastMessage = MessageDTO.fromEntity(msg);
-                        }
-                    }
-                    return ConversationDTO.fromEntity(conv, lastMessage);
-                })
-                .collect(Collectors.toList());
+        List<ConversationDTO> conversationDTOs = meterRegistry.timer("pigeon.inbox.read").record(() ->
+                conversationRepository.findInboxByUserId(userId).stream()
+                        .map(this::toInboxEntry)
+                        .collect(Collectors.toList()));
 
         return ResponseEntity.ok(conversationDTOs);
     }
 
     @GetMapping("/{conversationId}/messages")
-    public ResponseEntity<List<MessageDTO>> getMessages(
+    public ResponseEntity<MessagePageDTO> getMessages(
             @PathVariable Long conversationId,
-            @RequestParam(defaultValue = "0") int page,
-            @RequestParam(defaultValue = "50") int size) {
+            @RequestParam(required = false) String before,
+            @RequestParam(required = false) String after,
+            @RequestParam(defaultValue = "50") int size,
+            @AuthenticationPrincipal AuthenticatedUser currentUser) {
+
+        if (!participantIndex.isParticipant(conversationId, currentUser.getUserId())) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        // A page reads in one direction from one cursor
+        if (before != null && after != null) {
+            return ResponseEntity.badRequest().build();
+        }
 
-        List<Message> messages = messageRepository.findByConversationIdOrderByCreatedAtAsc(conversationId);
+        Long beforeId;
+        Long afterId;
+        try {
+            beforeId = MessagePageDTO.decodeCursor(before);
+            afterId = MessagePageDTO.decodeCursor(after);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+
+        int pageSize = Math.max(1, Math.min(size, MAX_PAGE_SIZE));
+        // Fetch one extra row to know whether another page exists
+        int limit = pageSize + 1;
+
+        Timer.Sample historyRead = Timer.start(meterRegistry);
+        List<MessageDTO> messageDTOs = afterId != null
+                ? new ArrayList<>(historyService.after(conversationId, afterId, limit))
+                : historyService.before(conversationId, beforeId, limit);
+        historyRead.stop(meterRegistry.timer("pigeon.history.read",
+                "direction", afterId != null ? "newer" : beforeId != null ? "older" : "latest"));
 
-        List<MessageDTO> messageDTOs = messages.stream()
-                .map(MessageDTO::fromEntity)
-                .collect(Collectors.toList());
+        boolean hasMore = messageDTOs.size() > pageSize;
+        if (hasMore) {
+            messageDTOs = messageDTOs.subList(0, pageSize);
+        }
+        if (afterId != null) {
+            // "after" pages are read oldest first; always respond newest first
+            Collections.reverse(messageDTOs);
+        }
 
-        return ResponseEntity.ok(messageDTOs);
+        receiptService.applyReceipts(conversationId, messageDTOs);
+
+        String olderCursor = messageDTOs.isEmpty() ? before
+                : MessagePageDTO.encodeCursor(messageDTOs.get(messageDTOs.size() - 1).getId());
+        String newerCursor = messageDTOs.isEmpty() ? after
+                : MessagePageDTO.encodeCursor(messageDTOs.get(0).getId());
+
+        return ResponseEntity.ok(new MessagePageDTO(messageDTOs, olderCursor, newerCursor, hasMore));
     }
 
     @PostMapping("/{conversationId}/messages")
     public ResponseEntity<MessageDTO> sendMessage(
             @PathVariable Long conversationId,
             @RequestBody SendMessageRequest request,
-            @RequestHeader("Authorization") String authHeader) {
-
-        Long userId = jwtUtil.extractUserId(authHeader.substring(7));
+            @AuthenticationPrincipal AuthenticatedUser currentUser) {
+
+        Long userId = currentUser.getUserId();
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String outcome = "error";
+        try {
+            // Retried send: answer with the original message, no second insert or broadcast
+            MessageDTO duplicate = findDuplicate(userId, request.getClientNonce());
+            if (duplicate != null) {
+                outcome = "duplicate";
+                return ResponseEntity.ok(duplicate);
+            }
+
+            // Daily limit and energy cost; a retry above never spends the allowance twice
+            SendQuotaService.Permit permit = sendQuotaService.tryAcquire(userId);
+            if (!permit.granted()) {
+                outcome = permit.decision() == SendQuotaService.Decision.DAILY_LIMIT ? "daily-limit" : "no-energy";
+                return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                        .header(HttpHeaders.RETRY_AFTER, String.valueOf(sendQuotaService.retryAfter(permit).toSeconds()))
+                        .build();
+            }
+
+            // Stored, counted and broadcast by the batched ingestion pipeline
+            MessageDTO messageDTO;
+            try {
+                messageDTO = ingestionService.send(conversationId, userId, request.getBody(), request.getClientNonce());
+            } catch (DataIntegrityViolationException e) {
+                sendQuotaService.release(permit);
+                // Lost a race with a concurrent retry of the same send
+                duplicate = findDuplicate(userId, request.getClientNonce());
+                if (duplicate != null) {
+                    outcome = "duplicate";
+                    return ResponseEntity.ok(duplicate);
+                }
+                throw e;
+            } catch (RuntimeException e) {
+                sendQuotaService.release(permit);
+                throw e;
+            }
+
+            sendDedupeCache.put(userId, request.getClientNonce(), messageDTO);
+
+            outcome = "stored";
+            return ResponseEntity.ok(messageDTO);
+        } finally {
+            sample.stop(meterRegistry.timer("pigeon.send", "outcome", outcome));
+        }
+    }
 
-        // Create message
-        Message message = new Message();
-        message.setConversationId(conversationId);
-        message.setSenderId(userId);
-        message.setBody(request.getBody());
-        message.setClientNonce(request.getClientNonce());
-        message.setStatus("sent");
+    private ConversationDTO toInboxEntry(InboxRow row) {
+        ConversationDTO dto = ConversationDTO.fromInboxRow(row);
+        Long lastMessageId = row.getConversation().getLastMessageId();
+        if (dto.getLastMessage() == null && lastMessageId != null) {
+            // Quiet for longer than the hot months: the preview now lives in the archive
+            dto.setLastMessage(historyService.findArchived(row.getConversation().getId(), lastMessageId));
+        }
+        return dto;
+    }
 
-        message = messageRepository.save(message);
+    private MessageDTO findDuplicate(Long senderId, String clientNonce) {
+        if (clientNonce == null) {
+            return null;
+        }
+        MessageDTO cached = sendDedupeCache.get(senderId, clientNonce);
+        if (cached != null) {
+            return cached;
+        }
+        MessageDTO existing = historyService.findByNonce(senderId, clientNonce);
+        if (existing != null) {
+            sendDedupeCache.put(senderId, clientNonce, existing);
+        }
+        return existing;
+    }
 
-        // Update conversation's last message
-        Conversation conversation = conversationRepository.findById(conversationId)
-                .orElseThrow(() -> new RuntimeException("Conversation not found"));
-        conversation.setLastMessageId(message.getId());
-        conversationRepository.save(conversation);
+    @PostMapping("/{conversationId}/read")
+    public ResponseEntity<Void> markRead(
+            @PathVariable Long conversationId,
+            @RequestParam(required = false) Long upToMessageId,
+            @AuthenticationPrincipal AuthenticatedUser currentUser) {
 
-        MessageDTO messageDTO = MessageDTO.fromEntity(message);
+        Long userId = currentUser.getUserId();
 
-        // Broadcast via WebSocket
-        if (messagingTemplate != null) {
-            messagingTemplate.convertAndSend("/topic/conversations/" + conversationId, messageDTO);
-        }
+        receiptService.markRead(userId, conversationId, upToMessageId);
 
-        return ResponseEntity.ok(messageDTO);
+        return ResponseEntity.noContent().build();
     }
 
     @PostMapping("/create")
     public ResponseEntity<ConversationDTO> createConversation(
             @RequestParam Long otherUserId,
-            @RequestHeader("Authorization") String authHeader) {
+            @AuthenticationPrincipal AuthenticatedUser currentUser) {
 
-        Long userId = jwtUtil.extractUserId(authHeader.substring(7));
+        Long userId = currentUser.getUserId();
 
         // Check if conversation already exists
         var existing = conversationRepository.findByParticipants(userId, otherUserId);
@@ -125,6 +240,10 @@ public class ConversationController {
         conversation.setParticipantAId(userId);
         conversation.setParticipantBId(otherUserId);
         conversation = conversationRepository.save(conversation);
+        participantIndex.register(conversation);
+        changeLog.record(List.of(
+                new UserChangeLog.Change(userId, UserChangeLog.Kind.CONVERSATION, conversation.getId(), null),
+                new UserChangeLog.Change(otherUserId, UserChangeLog.Kind.CONVERSATION, conversation.getId(), null)));
 
         return ResponseEntity.ok(ConversationDTO.fromEntity(conversation, null));
     }
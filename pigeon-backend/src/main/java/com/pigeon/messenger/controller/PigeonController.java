@@ -1,15 +1,20 @@
 package com.pigeon.messenger.controller;
 
 import com.pigeon.messenger.dto.PigeonDTO;
+import com.pigeon.messenger.dto.PigeonSnapshot;
 import com.pigeon.messenger.entity.Pigeon;
 import com.pigeon.messenger.entity.User;
 import com.pigeon.messenger.repository.PigeonRepository;
 import com.pigeon.messenger.repository.UserRepository;
-import com.pigeon.messenger.security.JwtUtil;
+import com.pigeon.messenger.security.AuthenticatedUser;
+import com.pigeon.messenger.service.PigeonVitalsCalculator;
+import com.pigeon.messenger.service.cache.ProfileCache;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
 
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.stream.Collectors;
 
@@ -17,6 +22,8 @@ import java.util.stream.Collectors;
 @RequestMapping("/api/pigeons")
 public class PigeonController {
 
+    private static final int FEED_ENERGY = 20;
+
     @Autowired
     private PigeonRepository pigeonRepository;
 
@@ -24,16 +31,19 @@ public class PigeonController {
     private UserRepository userRepository;
 
     @Autowired
-    private JwtUtil jwtUtil;
+    private PigeonVitalsCalculator vitalsCalculator;
+
+    @Autowired
+    private ProfileCache profileCache;
 
     @GetMapping("/party")
-    public ResponseEntity<List<PigeonDTO>> getParty(@RequestHeader("Authorization") String authHeader) {
-        Long userId = jwtUtil.extractUserId(authHeader.substring(7));
+    public ResponseEntity<List<PigeonDTO>> getParty(@AuthenticationPrincipal AuthenticatedUser currentUser) {
+        Long userId = currentUser.getUserId();
 
-        List<Pigeon> pigeons = pigeonRepository.findByUserIdAndIsInPartyTrue(userId);
+        List<PigeonSnapshot> pigeons = profileCache.getParty(userId);
 
         List<PigeonDTO> pigeonDTOs = pigeons.stream()
-                .map(PigeonDTO::fromEntity)
+                .map(vitalsCalculator::toDTO)
                 .collect(Collectors.toList());
 
         return ResponseEntity.ok(pigeonDTOs);
@@ -42,9 +52,9 @@ public class PigeonController {
     @PutMapping("/{pigeonId}/activate")
     public ResponseEntity<PigeonDTO> setActivePigeon(
             @PathVariable Long pigeonId,
-            @RequestHeader("Authorization") String authHeader) {
+            @AuthenticationPrincipal AuthenticatedUser currentUser) {
 
-        Long userId = jwtUtil.extractUserId(authHeader.substring(7));
+        Long userId = currentUser.getUserId();
 
         Pigeon pigeon = pigeonRepository.findById(pigeonId)
                 .orElseThrow(() -> new RuntimeException("Pigeon not found"));
@@ -57,7 +67,30 @@ public class PigeonController {
                 .orElseThrow(() -> new RuntimeException("User not found"));
         user.setActivePigeonId(pigeonId);
         userRepository.save(user);
+        profileCache.evictUser(userId);
+
+        return ResponseEntity.ok(vitalsCalculator.toDTO(PigeonSnapshot.fromEntity(pigeon)));
+    }
+
+    @PostMapping("/{pigeonId}/feed")
+    public ResponseEntity<PigeonDTO> feedPigeon(
+            @PathVariable Long pigeonId,
+            @AuthenticationPrincipal AuthenticatedUser currentUser) {
+
+        Pigeon pigeon = pigeonRepository.findById(pigeonId)
+                .orElseThrow(() -> new RuntimeException("Pigeon not found"));
+
+        if (!pigeon.getUserId().equals(currentUser.getUserId())) {
+            return ResponseEntity.status(403).build();
+        }
+
+        // Feeding is a user action, so it is one of the few places vitals are written; relative to the
+        // row, so a send quota flush at the same moment is not overwritten
+        pigeonRepository.applyFeed(pigeonId, FEED_ENERGY, LocalDateTime.now(), vitalsCalculator.energyRegenPerHour());
+        profileCache.evictParty(pigeon.getUserId());
+        pigeon = pigeonRepository.findById(pigeonId)
+                .orElseThrow(() -> new RuntimeException("Pigeon not found"));
 
-        return ResponseEntity.ok(PigeonDTO.fromEntity(pigeon));
+        return ResponseEntity.ok(vitalsCalculator.toDTO(PigeonSnapshot.fromEntity(pigeon)));
     }
 }
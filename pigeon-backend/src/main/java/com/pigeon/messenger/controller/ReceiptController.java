@@ -0,0 +1,47 @@
+package com.pigeon.messenger.controller;
+
+import com.pigeon.messenger.dto.AckRequest;
+import com.pigeon.messenger.security.AuthenticatedUser;
+import com.pigeon.messenger.service.ReceiptService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.messaging.handler.annotation.MessageMapping;
+import org.springframework.messaging.handler.annotation.Payload;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.ResponseBody;
+
+import java.util.List;
+
+@Controller
+public class ReceiptController {
+
+    @Autowired
+    private ReceiptService receiptService;
+
+    // Batch ack over REST: one entry per conversation, watermarks only move forward
+    @PostMapping("/api/conversations/ack")
+    @ResponseBody
+    public ResponseEntity<Void> acknowledge(
+            @RequestBody List<AckRequest> acks,
+            @AuthenticationPrincipal AuthenticatedUser currentUser) {
+
+        Long userId = currentUser.getUserId();
+        receiptService.acknowledge(userId, acks);
+
+        return ResponseEntity.noContent().build();
+    }
+
+    // Same ack sent as a STOMP frame to /app/ack; the session was authenticated at CONNECT
+    @MessageMapping("/ack")
+    public void acknowledgeFrame(
+            @Payload List<AckRequest> acks,
+            Authentication authentication) {
+
+        AuthenticatedUser currentUser = (AuthenticatedUser) authentication.getPrincipal();
+        receiptService.acknowledge(currentUser.getUserId(), acks);
+    }
+}
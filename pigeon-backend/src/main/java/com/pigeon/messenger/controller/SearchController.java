@@ -0,0 +1,63 @@
+package com.pigeon.messenger.controller;
+
+import com.pigeon.messenger.dto.SearchHitDTO;
+import com.pigeon.messenger.dto.SearchPageDTO;
+import com.pigeon.messenger.security.AuthenticatedUser;
+import com.pigeon.messenger.service.search.MessageSearch;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/search")
+public class SearchController {
+
+    private static final int MAX_PAGE_SIZE = 50;
+    private static final int MAX_QUERY_LENGTH = 200;
+
+    @Autowired
+    private MessageSearch messageSearch;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${pigeon.search.mode:postgres}")
+    private String searchMode;
+
+    // Messages in the caller's conversations matching every word of q, best match first
+    @GetMapping
+    public ResponseEntity<SearchPageDTO> search(
+            @RequestParam String q,
+            @RequestParam(required = false) String after,
+            @RequestParam(defaultValue = "20") int size,
+            @AuthenticationPrincipal AuthenticatedUser currentUser) {
+
+        if (q.isBlank() || q.length() > MAX_QUERY_LENGTH) {
+            return ResponseEntity.badRequest().build();
+        }
+        SearchPageDTO.Cursor cursor;
+        try {
+            cursor = SearchPageDTO.decodeCursor(after);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+
+        int pageSize = Math.max(1, Math.min(size, MAX_PAGE_SIZE));
+        // Fetch one extra hit to know whether another page exists
+        List<SearchHitDTO> hits = meterRegistry.timer("pigeon.search", "mode", searchMode).record(() ->
+                messageSearch.search(currentUser.getUserId(), q, cursor, pageSize + 1));
+
+        boolean hasMore = hits.size() > pageSize;
+        if (hasMore) {
+            hits = hits.subList(0, pageSize);
+        }
+        String nextCursor = hits.isEmpty() ? after : SearchPageDTO.encodeCursor(hits.get(hits.size() - 1));
+
+        return ResponseEntity.ok(new SearchPageDTO(hits, nextCursor, hasMore));
+    }
+}
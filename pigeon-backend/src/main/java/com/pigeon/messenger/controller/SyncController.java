@@ -0,0 +1,44 @@
+package com.pigeon.messenger.controller;
+
+import com.pigeon.messenger.dto.SyncDTO;
+import com.pigeon.messenger.security.AuthenticatedUser;
+import com.pigeon.messenger.service.sync.SyncService;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.web.bind.annotation.*;
+
+@RestController
+@RequestMapping("/api/sync")
+public class SyncController {
+
+    private static final int MAX_CHANGES = 1000;
+
+    @Autowired
+    private SyncService syncService;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    // What changed for the caller since the cursor; without since, only the current cursor (reset=true)
+    @GetMapping
+    public ResponseEntity<SyncDTO> sync(
+            @RequestParam(required = false) String since,
+            @RequestParam(defaultValue = "500") int size,
+            @AuthenticationPrincipal AuthenticatedUser currentUser) {
+
+        Long sinceSeq;
+        try {
+            sinceSeq = SyncDTO.decodeCursor(since);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+
+        int limit = Math.max(1, Math.min(size, MAX_CHANGES));
+        SyncDTO result = meterRegistry.timer("pigeon.sync.read").record(() ->
+                syncService.sync(currentUser.getUserId(), sinceSeq, limit));
+
+        return ResponseEntity.ok(result);
+    }
+}
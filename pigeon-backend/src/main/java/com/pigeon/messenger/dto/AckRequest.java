@@ -0,0 +1,14 @@
+package com.pigeon.messenger.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class AckRequest {
+    private Long conversationId;
+    private Long deliveredUpTo;
+    private Long readUpTo;
+}
@@ -15,6 +15,8 @@ public class ConversationDTO {
     private Long id;
     private List<Long> participantIds;
     private MessageDTO lastMessage;
+    private String otherParticipantName;
+    private String otherParticipantAvatarUrl;
     private Integer unreadCount;
     private LocalDateTime updatedAt;
 
@@ -23,8 +25,21 @@ public class ConversationDTO {
             conversation.getId(),
             List.of(conversation.getParticipantAId(), conversation.getParticipantBId()),
             lastMessage,
-            0, // Will be calculated
+            null,
+            null,
+            0, // Materialized in conversation_read_state, see fromInboxRow
             conversation.getUpdatedAt()
         );
     }
+
+    public static ConversationDTO fromInboxRow(InboxRow row) {
+        ConversationDTO dto = fromEntity(row.getConversation(),
+                row.getLastMessage() != null ? MessageDTO.fromEntity(row.getLastMessage()) : null);
+        if (row.getOtherParticipant() != null) {
+            dto.setOtherParticipantName(row.getOtherParticipant().getDisplayName());
+            dto.setOtherParticipantAvatarUrl(row.getOtherParticipant().getAvatarUrl());
+        }
+        dto.setUnreadCount(row.getUnreadCount() != null ? row.getUnreadCount() : 0);
+        return dto;
+    }
 }
@@ -0,0 +1,20 @@
+package com.pigeon.messenger.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class FlightDTO {
+    private Long id;
+    private Long messageId;
+    private Long conversationId;
+    private Long pigeonId;
+    private LocalDateTime departAt;
+    private LocalDateTime etaAt;
+    private String state;
+}
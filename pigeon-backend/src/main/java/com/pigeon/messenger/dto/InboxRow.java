@@ -0,0 +1,18 @@
+package com.pigeon.messenger.dto;
+
+import com.pigeon.messenger.entity.Conversation;
+import com.pigeon.messenger.entity.Message;
+import com.pigeon.messenger.entity.User;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class InboxRow {
+    private Conversation conversation;
+    private Message lastMessage;
+    private User otherParticipant;
+    private Integer unreadCount;
+}
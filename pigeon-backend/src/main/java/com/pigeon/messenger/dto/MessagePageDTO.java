@@ -0,0 +1,44 @@
+package com.pigeon.messenger.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class MessagePageDTO {
+    private List<MessageDTO> messages; // newest first
+    private String olderCursor;        // pass as ?before= to load older history
+    private String newerCursor;        // pass as ?after= to load newer messages
+    private boolean hasMore;
+
+    private static final String CURSOR_PREFIX = "m:";
+
+    public static String encodeCursor(Long messageId) {
+        if (messageId == null) {
+            return null;
+        }
+        byte[] raw = (CURSOR_PREFIX + messageId).getBytes(StandardCharsets.UTF_8);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw);
+    }
+
+    public static Long decodeCursor(String cursor) {
+        if (cursor == null || cursor.isBlank()) {
+            return null;
+        }
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            if (!raw.startsWith(CURSOR_PREFIX)) {
+                throw new IllegalArgumentException("Invalid cursor");
+            }
+            return Long.parseLong(raw.substring(CURSOR_PREFIX.length()));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid cursor", e);
+        }
+    }
+}
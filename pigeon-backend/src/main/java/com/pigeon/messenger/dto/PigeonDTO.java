@@ -1,10 +1,10 @@
 package com.pigeon.messenger.dto;
 
-import com.pigeon.messenger.entity.Pigeon;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
+// Built by PigeonVitalsCalculator.toDTO, which derives mood and energy at read time
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -13,19 +13,8 @@ public class PigeonDTO {
     private String name;
     private String spriteKey;
     private Integer level;
+    private Integer xp;
     private String mood;
     private Integer energy;
     private String trait;
-
-    public static PigeonDTO fromEntity(Pigeon pigeon) {
-        return new PigeonDTO(
-            pigeon.getId(),
-            pigeon.getName(),
-            pigeon.getSpriteKey(),
-            pigeon.getLevel(),
-            pigeon.getMood(),
-            pigeon.getEnergy(),
-            pigeon.getTrait()
-        );
-    }
 }
@@ -0,0 +1,37 @@
+package com.pigeon.messenger.dto;
+
+import com.pigeon.messenger.entity.Pigeon;
+
+import java.time.LocalDateTime;
+
+// Immutable copy of a pigeon row with its stored base vitals, as shared between requests by ProfileCache;
+// PigeonVitalsCalculator derives the live energy and mood from it
+public record PigeonSnapshot(
+        Long id,
+        Long userId,
+        String name,
+        String spriteKey,
+        Integer level,
+        Integer xp,
+        Integer energy,
+        LocalDateTime energyUpdatedAt,
+        LocalDateTime lastFedAt,
+        LocalDateTime lastMessageSentAt,
+        String trait) {
+
+    public static PigeonSnapshot fromEntity(Pigeon pigeon) {
+        return new PigeonSnapshot(
+            pigeon.getId(),
+            pigeon.getUserId(),
+            pigeon.getName(),
+            pigeon.getSpriteKey(),
+            pigeon.getLevel(),
+            pigeon.getXp(),
+            pigeon.getEnergy(),
+            pigeon.getEnergyUpdatedAt(),
+            pigeon.getLastFedAt(),
+            pigeon.getLastMessageSentAt(),
+            pigeon.getTrait()
+        );
+    }
+}
@@ -0,0 +1,25 @@
+package com.pigeon.messenger.dto;
+
+import com.pigeon.messenger.entity.ConversationReadState;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ReceiptDTO {
+    private Long conversationId;
+    private Long userId;
+    private Long lastDeliveredMessageId;
+    private Long lastReadMessageId;
+
+    public static ReceiptDTO fromEntity(ConversationReadState state) {
+        return new ReceiptDTO(
+            state.getConversationId(),
+            state.getUserId(),
+            state.getLastDeliveredMessageId(),
+            state.getLastReadMessageId()
+        );
+    }
+}
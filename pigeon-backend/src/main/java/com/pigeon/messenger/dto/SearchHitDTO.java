@@ -0,0 +1,13 @@
+package com.pigeon.messenger.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SearchHitDTO {
+    private MessageDTO message;
+    private float rank; // higher is better; only comparable within one search mode
+}
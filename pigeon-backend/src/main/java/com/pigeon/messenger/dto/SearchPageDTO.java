@@ -0,0 +1,50 @@
+package com.pigeon.messenger.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SearchPageDTO {
+    private List<SearchHitDTO> results; // best match first, ties newest first
+    private String nextCursor;          // pass as ?after= to load the next page
+    private boolean hasMore;
+
+    private static final String CURSOR_PREFIX = "s:";
+
+    // Position after a hit: its rank and message id, the keyset of the (rank DESC, id DESC) ordering
+    public record Cursor(float rank, long messageId) {
+    }
+
+    public static String encodeCursor(SearchHitDTO hit) {
+        if (hit == null) {
+            return null;
+        }
+        // Float.toString round-trips exactly, so the next page resumes at the same rank
+        byte[] raw = (CURSOR_PREFIX + hit.getRank() + ":" + hit.getMessage().getId()).getBytes(StandardCharsets.UTF_8);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw);
+    }
+
+    public static Cursor decodeCursor(String cursor) {
+        if (cursor == null || cursor.isBlank()) {
+            return null;
+        }
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int separator = raw.lastIndexOf(':');
+            if (!raw.startsWith(CURSOR_PREFIX) || separator <= CURSOR_PREFIX.length()) {
+                throw new IllegalArgumentException("Invalid cursor");
+            }
+            return new Cursor(Float.parseFloat(raw.substring(CURSOR_PREFIX.length(), separator)),
+                    Long.parseLong(raw.substring(separator + 1)));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid cursor", e);
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package com.pigeon.messenger.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SyncDTO {
+    private List<ConversationDTO> conversations; // current state of every conversation that changed
+    private List<MessageDTO> messages;           // new messages, oldest first
+    private List<ReceiptDTO> receipts;           // current watermarks in conversations with new receipts
+    private String cursor;                       // pass as ?since= on the next sync
+    private boolean hasMore;                     // more changes are waiting; sync again with cursor
+    private boolean reset;                       // since was missing or expired: reload, then sync from cursor
+
+    private static final String CURSOR_PREFIX = "c:";
+
+    public static String encodeCursor(long seq) {
+        byte[] raw = (CURSOR_PREFIX + seq).getBytes(StandardCharsets.UTF_8);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw);
+    }
+
+    public static Long decodeCursor(String cursor) {
+        if (cursor == null || cursor.isBlank()) {
+            return null;
+        }
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            if (!raw.startsWith(CURSOR_PREFIX)) {
+                throw new IllegalArgumentException("Invalid cursor");
+            }
+            return Long.parseLong(raw.substring(CURSOR_PREFIX.length()));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid cursor", e);
+        }
+    }
+}
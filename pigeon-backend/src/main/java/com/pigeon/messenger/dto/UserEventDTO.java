@@ -0,0 +1,16 @@
+package com.pigeon.messenger.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// One frame on /user/queue/events: what happened in which conversation, with the same payload the
+// conversation topics carry
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class UserEventDTO {
+    private String type; // message, receipt or flight
+    private Long conversationId;
+    private Object payload;
+}
@@ -0,0 +1,16 @@
+package com.pigeon.messenger.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class WeatherDTO {
+    private String condition;
+    private Integer temperature;
+    private String icon;
+    private Double delayMultiplier;
+    private Boolean isLive;
+}
@@ -31,6 +31,10 @@ public class Conversation {
     @Column(name = "last_message_id")
     private Long lastMessageId;
 
+    // Partition key of the last message, so it can be looked up in its own month
+    @Column(name = "last_message_created_at")
+    private LocalDateTime lastMessageCreatedAt;
+
     @CreatedDate
     @Column(name = "created_at", nullable = false, updatable = false)
     private LocalDateTime createdAt;
@@ -10,25 +10,31 @@ import org.springframework.data.jpa.domain.support.AuditingEntityListener;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "message_status")
+@Table(name = "conversation_read_state")
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
 @EntityListeners(AuditingEntityListener.class)
-public class MessageStatus {
+public class ConversationReadState {
 
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
 
-    @Column(name = "message_id", nullable = false)
-    private Long messageId;
+    @Column(name = "conversation_id", nullable = false)
+    private Long conversationId;
 
     @Column(name = "user_id", nullable = false)
     private Long userId;
 
-    @Column(length = 20, columnDefinition = "VARCHAR(20) DEFAULT 'delivered'")
-    private String status = "delivered";
+    @Column(name = "unread_count", nullable = false, columnDefinition = "INT DEFAULT 0")
+    private Integer unreadCount = 0;
+
+    @Column(name = "last_delivered_message_id")
+    private Long lastDeliveredMessageId;
+
+    @Column(name = "last_read_message_id")
+    private Long lastReadMessageId;
 
     @LastModifiedDate
     @Column(name = "updated_at")
@@ -17,8 +17,10 @@ import java.time.LocalDateTime;
 @EntityListeners(AuditingEntityListener.class)
 public class Flight {
 
+    // Pooled sequence (see V9 migration) so Hibernate can batch inserts
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "flights_seq")
+    @SequenceGenerator(name = "flights_seq", sequenceName = "flights_id_seq", allocationSize = 50)
     private Long id;
 
     @Column(name = "message_id", nullable = false)
@@ -17,8 +17,10 @@ import java.time.LocalDateTime;
 @EntityListeners(AuditingEntityListener.class)
 public class Message {
 
+    // Ids follow send time (see V15 migration); MessageIngestionService takes a batch's ids at flush time
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "messages_seq")
+    @SequenceGenerator(name = "messages_seq", sequenceName = "messages_id_seq", allocationSize = 1)
     private Long id;
 
     @Column(name = "conversation_id", nullable = false)
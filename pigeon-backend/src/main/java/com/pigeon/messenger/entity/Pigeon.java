@@ -33,12 +33,25 @@ public class Pigeon {
     @Column(columnDefinition = "INT DEFAULT 1")
     private Integer level = 1;
 
+    @Column(columnDefinition = "INT DEFAULT 0")
+    private Integer xp = 0;
+
     @Column(length = 20, columnDefinition = "VARCHAR(20) DEFAULT 'happy'")
     private String mood = "happy";
 
+    // Energy as of energyUpdatedAt; the current value is derived by PigeonVitalsCalculator
     @Column(columnDefinition = "INT DEFAULT 100")
     private Integer energy = 100;
 
+    @Column(name = "energy_updated_at")
+    private LocalDateTime energyUpdatedAt = LocalDateTime.now();
+
+    @Column(name = "last_fed_at")
+    private LocalDateTime lastFedAt;
+
+    @Column(name = "last_message_sent_at")
+    private LocalDateTime lastMessageSentAt;
+
     @Column(length = 50)
     private String trait;
 
@@ -0,0 +1,75 @@
+package com.pigeon.messenger.repository;
+
+import com.pigeon.messenger.entity.ConversationReadState;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface ConversationReadStateRepository extends JpaRepository<ConversationReadState, Long> {
+
+    Optional<ConversationReadState> findByConversationIdAndUserId(Long conversationId, Long userId);
+
+    List<ConversationReadState> findByConversationId(Long conversationId);
+
+    List<ConversationReadState> findByConversationIdIn(Collection<Long> conversationIds);
+
+    // The acknowledged id comes from the client; a watermark never passes the conversation's last message,
+    // so an inflated ack can't mark messages that arrive later as delivered or read
+    String ACKED_MESSAGE_ID = "LEAST(:messageId, COALESCE((SELECT c.last_message_id FROM conversations c " +
+                              "WHERE c.id = :conversationId), 0))";
+
+    @Modifying
+    @Transactional
+    @Query(value = "INSERT INTO conversation_read_state (conversation_id, user_id, unread_count, last_delivered_message_id) " +
+                   "VALUES (:conversationId, :userId, 0, " + ACKED_MESSAGE_ID + ") " +
+                   "ON CONFLICT (conversation_id, user_id) DO UPDATE SET " +
+                   "last_delivered_message_id = GREATEST(COALESCE(conversation_read_state.last_delivered_message_id, 0), " +
+                   ACKED_MESSAGE_ID + "), " +
+                   "updated_at = CURRENT_TIMESTAMP",
+           nativeQuery = true)
+    int advanceDeliveredWatermark(@Param("conversationId") Long conversationId,
+                                  @Param("userId") Long userId,
+                                  @Param("messageId") Long messageId);
+
+    @Modifying
+    @Transactional
+    @Query(value = "INSERT INTO conversation_read_state (conversation_id, user_id, unread_count) " +
+                   "VALUES (:conversationId, :userId, :delta) " +
+                   "ON CONFLICT (conversation_id, user_id) DO UPDATE SET " +
+                   "unread_count = conversation_read_state.unread_count + :delta, " +
+                   "updated_at = CURRENT_TIMESTAMP",
+           nativeQuery = true)
+    int incrementUnread(@Param("conversationId") Long conversationId,
+                        @Param("userId") Long userId,
+                        @Param("delta") int delta);
+
+    // Advances the read watermark (never backwards), which implies delivery,
+    // and recounts only the messages still above it
+    @Modifying
+    @Transactional
+    @Query(value = "INSERT INTO conversation_read_state " +
+                   "(conversation_id, user_id, unread_count, last_delivered_message_id, last_read_message_id) " +
+                   "VALUES (:conversationId, :userId, 0, " + ACKED_MESSAGE_ID + ", " + ACKED_MESSAGE_ID + ") " +
+                   "ON CONFLICT (conversation_id, user_id) DO UPDATE SET " +
+                   "last_delivered_message_id = GREATEST(COALESCE(conversation_read_state.last_delivered_message_id, 0), " +
+                   ACKED_MESSAGE_ID + "), " +
+                   "last_read_message_id = GREATEST(COALESCE(conversation_read_state.last_read_message_id, 0), " +
+                   ACKED_MESSAGE_ID + "), " +
+                   "unread_count = (SELECT COUNT(*) FROM messages m WHERE m.conversation_id = :conversationId " +
+                   "AND m.sender_id <> :userId " +
+                   "AND m.id > GREATEST(COALESCE(conversation_read_state.last_read_message_id, 0), " +
+                   ACKED_MESSAGE_ID + ")), " +
+                   "updated_at = CURRENT_TIMESTAMP",
+           nativeQuery = true)
+    int advanceReadWatermark(@Param("conversationId") Long conversationId,
+                             @Param("userId") Long userId,
+                             @Param("messageId") Long messageId);
+}
@@ -1,11 +1,15 @@
 package com.pigeon.messenger.repository;
 
+import com.pigeon.messenger.dto.InboxRow;
 import com.pigeon.messenger.entity.Conversation;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -17,9 +21,46 @@ public interface ConversationRepository extends JpaRepository<Conversation, Long
            "ORDER BY c.updatedAt DESC")
     List<Conversation> findByUserId(@Param("userId") Long userId);
 
+    @Query("SELECT c.id FROM Conversation c WHERE c.participantAId = :userId OR c.participantBId = :userId")
+    List<Long> findIdsByUserId(@Param("userId") Long userId);
+
+    // Whole inbox in one round trip: conversation, last message, other participant and unread counter.
+    // The last message is joined on id and created_at so only its month's partition of messages is read.
+    @Query("SELECT new com.pigeon.messenger.dto.InboxRow(c, m, u, COALESCE(r.unreadCount, 0)) " +
+           "FROM Conversation c " +
+           "LEFT JOIN Message m ON m.id = c.lastMessageId AND m.createdAt = c.lastMessageCreatedAt " +
+           "LEFT JOIN ConversationReadState r ON r.conversationId = c.id AND r.userId = :userId " +
+           "LEFT JOIN User u ON u.id = CASE WHEN c.participantAId = :userId " +
+           "THEN c.participantBId ELSE c.participantAId END " +
+           "WHERE c.participantAId = :userId OR c.participantBId = :userId " +
+           "ORDER BY c.updatedAt DESC")
+    List<InboxRow> findInboxByUserId(@Param("userId") Long userId);
+
+    // The same rows for a few conversations, e.g. those a delta sync reports as changed
+    @Query("SELECT new com.pigeon.messenger.dto.InboxRow(c, m, u, COALESCE(r.unreadCount, 0)) " +
+           "FROM Conversation c " +
+           "LEFT JOIN Message m ON m.id = c.lastMessageId AND m.createdAt = c.lastMessageCreatedAt " +
+           "LEFT JOIN ConversationReadState r ON r.conversationId = c.id AND r.userId = :userId " +
+           "LEFT JOIN User u ON u.id = CASE WHEN c.participantAId = :userId " +
+           "THEN c.participantBId ELSE c.participantAId END " +
+           "WHERE (c.participantAId = :userId OR c.participantBId = :userId) AND c.id IN :conversationIds " +
+           "ORDER BY c.updatedAt DESC")
+    List<InboxRow> findInboxByUserIdAndConversationIds(@Param("userId") Long userId,
+                                                       @Param("conversationIds") Collection<Long> conversationIds);
+
     @Query("SELECT c FROM Conversation c WHERE " +
            "(c.participantAId = :userA AND c.participantBId = :userB) OR " +
            "(c.participantAId = :userB AND c.participantBId = :userA)")
     Optional<Conversation> findByParticipants(@Param("userA") Long userA,
                                                @Param("userB") Long userB);
+
+    // Moves last_message_id forward only, so out-of-order batches can't regress it
+    @Modifying
+    @Query(value = "UPDATE conversations SET last_message_id = :messageId, " +
+                   "last_message_created_at = :messageCreatedAt, updated_at = CURRENT_TIMESTAMP " +
+                   "WHERE id = :conversationId AND (last_message_id IS NULL OR last_message_id < :messageId)",
+           nativeQuery = true)
+    int advanceLastMessage(@Param("conversationId") Long conversationId,
+                           @Param("messageId") Long messageId,
+                           @Param("messageCreatedAt") LocalDateTime messageCreatedAt);
 }
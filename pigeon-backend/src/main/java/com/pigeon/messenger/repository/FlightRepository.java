@@ -1,12 +1,45 @@
 package com.pigeon.messenger.repository;
 
+import com.pigeon.messenger.dto.FlightDTO;
 import com.pigeon.messenger.entity.Flight;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface FlightRepository extends JpaRepository<Flight, Long> {
     Optional<Flight> findByMessageId(Long messageId);
+
+    interface FlyingFlight {
+        Long getId();
+        LocalDateTime getEtaAt();
+    }
+
+    // Keyset scan over idx_flights_flying, used to rebuild the flight engine on startup
+    @Query("SELECT f.id AS id, f.etaAt AS etaAt FROM Flight f " +
+           "WHERE f.state = 'flying' AND f.id > :afterId ORDER BY f.id")
+    List<FlyingFlight> findFlyingAfter(@Param("afterId") Long afterId, Pageable pageable);
+
+    // Claims the still-flying subset of a due batch; rows another node is landing are skipped
+    @Query(value = "SELECT f.id FROM flights f WHERE f.id IN (:ids) AND f.state = 'flying' " +
+                   "FOR UPDATE SKIP LOCKED",
+           nativeQuery = true)
+    List<Long> lockFlying(@Param("ids") Collection<Long> ids);
+
+    @Modifying
+    @Query("UPDATE Flight f SET f.state = 'delivered' WHERE f.id IN :ids AND f.state = 'flying'")
+    int markDelivered(@Param("ids") Collection<Long> ids);
+
+    @Query("SELECT new com.pigeon.messenger.dto.FlightDTO(f.id, f.messageId, m.conversationId, " +
+           "f.pigeonId, f.departAt, f.etaAt, f.state) " +
+           "FROM Flight f JOIN Message m ON m.id = f.messageId WHERE f.id IN :ids")
+    List<FlightDTO> findDTOsByIdIn(@Param("ids") Collection<Long> ids);
 }
@@ -6,12 +6,14 @@ import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
 import java.util.List;
-import java.util.Optional;
 
 @Repository
 public interface MessageRepository extends JpaRepository<Message, Long> {
     Page<Message> findByConversationIdOrderByCreatedAtDesc(Long conversationId, Pageable pageable);
     List<Message> findByConversationIdOrderByCreatedAtAsc(Long conversationId);
-    Optional<Message> findByClientNonce(String clientNonce);
+
+    // Sends since the start of the quota day, over idx_messages_sender_created_at
+    long countBySenderIdAndCreatedAtGreaterThanEqual(Long senderId, LocalDateTime since);
 }
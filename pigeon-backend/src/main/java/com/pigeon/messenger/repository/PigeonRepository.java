@@ -2,12 +2,54 @@ package com.pigeon.messenger.repository;
 
 import com.pigeon.messenger.entity.Pigeon;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDateTime;
 import java.util.List;
 
 @Repository
 public interface PigeonRepository extends JpaRepository<Pigeon, Long> {
     List<Pigeon> findByUserIdAndIsInPartyTrue(Long userId);
     List<Pigeon> findByUserId(Long userId);
+
+    // PigeonVitalsCalculator.energyAt in SQL: the stored base plus recovery since energy_updated_at, clamped
+    String ENERGY_AT_NOW = "LEAST(100, GREATEST(0, FLOOR(COALESCE(energy, 100) + "
+            + "GREATEST(0, EXTRACT(EPOCH FROM (CAST(:now AS timestamp) - energy_updated_at))) / 3600.0 * :regenPerHour)))";
+
+    // Vitals writes are relative updates of the row itself, so a feed and the send quota flush running at
+    // the same time both land instead of one overwriting the other with a stale copy. Mood is not
+    // written; it is derived on read. Level stops at 100, the ceiling of check_level.
+    @Modifying
+    @Transactional
+    @Query(value = "UPDATE pigeons SET energy = GREATEST(0, " + ENERGY_AT_NOW + " - :energySpent), " +
+                   "energy_updated_at = :now, " +
+                   "xp = GREATEST(0, COALESCE(xp, 0) + :xp), " +
+                   "level = LEAST(100, GREATEST(COALESCE(level, 1), " +
+                   "GREATEST(0, COALESCE(xp, 0) + :xp) / :xpPerLevel + 1)), " +
+                   "last_message_sent_at = GREATEST(last_message_sent_at, CAST(:sentAt AS timestamp)) " +
+                   "WHERE id = :pigeonId",
+           nativeQuery = true)
+    int applySends(@Param("pigeonId") Long pigeonId,
+                   @Param("energySpent") int energySpent,
+                   @Param("xp") int xp,
+                   @Param("xpPerLevel") int xpPerLevel,
+                   @Param("sentAt") LocalDateTime sentAt,
+                   @Param("now") LocalDateTime now,
+                   @Param("regenPerHour") double regenPerHour);
+
+    // Clears the persistence context so a re-read in the same request sees the fed row
+    @Modifying(clearAutomatically = true)
+    @Transactional
+    @Query(value = "UPDATE pigeons SET energy = LEAST(100, " + ENERGY_AT_NOW + " + :energy), " +
+                   "energy_updated_at = :now, last_fed_at = :now " +
+                   "WHERE id = :pigeonId",
+           nativeQuery = true)
+    int applyFeed(@Param("pigeonId") Long pigeonId,
+                  @Param("energy") int energy,
+                  @Param("now") LocalDateTime now,
+                  @Param("regenPerHour") double regenPerHour);
 }
@@ -0,0 +1,20 @@
+package com.pigeon.messenger.security;
+
+import lombok.Value;
+
+import java.security.Principal;
+import java.time.Instant;
+
+// Verified identity carried by a JWT; placed in the SecurityContext by JwtAuthenticationFilter
+@Value
+public class AuthenticatedUser implements Principal {
+    Long userId;
+    String phone;
+    Instant expiresAt;
+
+    // The STOMP user name, so /user/{userId}/... destinations resolve to this user's sessions
+    @Override
+    public String getName() {
+        return String.valueOf(userId);
+    }
+}
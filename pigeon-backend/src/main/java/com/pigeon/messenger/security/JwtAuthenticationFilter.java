@@ -1,7 +1,6 @@
 package com.pigeon.messenger.security;
 
-import com.pigeon.messenger.entity.User;
-import com.pigeon.messenger.repository.UserRepository;
+import io.micrometer.core.instrument.MeterRegistry;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
@@ -9,12 +8,12 @@ import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.context.SecurityContextHolder;
-import org.springframework.security.web.authentication.WebSecurityConfigurerAdapter;
 import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
 
 @Component
 public class JwtAuthenticationFilter extends OncePerRequestFilter {
@@ -23,37 +22,42 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
     private JwtUtil jwtUtil;
 
     @Autowired
-    private UserRepository userRepository;
+    private MeterRegistry meterRegistry;
 
     @Override
     protected void doFilterInternal(HttpServletRequest request,
                                     HttpServletResponse response,
                                     FilterChain filterChain) throws ServletException, IOException {
 
+        long start = System.nanoTime();
         final String authorizationHeader = request.getHeader("Authorization");
 
-        String phone = null;
-        String jwt = null;
+        AuthenticatedUser user = null;
+        String outcome = "anonymous";
 
         if (authorizationHeader != null && authorizationHeader.startsWith("Bearer ")) {
-            jwt = authorizationHeader.substring(7);
+            String jwt = authorizationHeader.substring(7);
             try {
-                phone = jwtUtil.extractPhone(jwt);
+                // One signature check per token (cached afterwards); identity comes from the claims,
+                // so no user lookup is needed
+                user = jwtUtil.authenticate(jwt);
+                outcome = "authenticated";
             } catch (Exception e) {
                 // Invalid token
+                outcome = "rejected";
             }
         }
 
-        if (phone != null && SecurityContextHolder.getContext().getAuthentication() == null) {
-            User user = userRepository.findByPhone(phone).orElse(null);
-
-            if (user != null && jwtUtil.validateToken(jwt, phone)) {
-                UsernamePasswordAuthenticationToken authToken =
-                        new UsernamePasswordAuthenticationToken(user, null, new ArrayList<>());
-                SecurityContextHolder.getContext().setAuthentication(authToken);
-            }
+        if (user != null && SecurityContextHolder.getContext().getAuthentication() == null) {
+            UsernamePasswordAuthenticationToken authToken =
+                    new UsernamePasswordAuthenticationToken(user, null, new ArrayList<>());
+            SecurityContextHolder.getContext().setAuthentication(authToken);
         }
 
+        // Only the authentication work, not the rest of the chain
+        meterRegistry.timer("pigeon.auth.filter", "outcome", outcome)
+                .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+
         filterChain.doFilter(request, response);
     }
 }
@@ -1,37 +1,135 @@
 package com.pigeon.messenger.security;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
-import io.jsonwebtoken.SignatureAlgorithm;
 import io.jsonwebtoken.security.Keys;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
-import java.security.Key;
+import javax.crypto.SecretKey;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Function;
 
 @Component
 public class JwtUtil {
 
+    @Autowired
+    private MeterRegistry meterRegistry;
+
     @Value("${jwt.secret}")
     private String secret;
 
     @Value("${jwt.expiration}")
     private Long expiration;
 
-    private Key getSigningKey() {
-        return Keys.hmacShaKeyFor(secret.getBytes());
+    @Value("${jwt.cache.maximum-size:100000}")
+    private long cacheMaximumSize;
+
+    @Value("${jwt.cache.ttl:PT5M}")
+    private Duration cacheTtl;
+
+    // Built once; both are immutable and thread-safe
+    private SecretKey signingKey;
+    private JwtParser parser;
+
+    // Verified tokens, kept no longer than cacheTtl and never past their own expiry
+    private Cache<String, AuthenticatedUser> verifiedTokens;
+
+    private Timer cachedTimer;
+    private Timer verifiedTimer;
+    private Timer invalidTimer;
+
+    @PostConstruct
+    public void init() {
+        signingKey = Keys.hmacShaKeyFor(secret.getBytes(StandardCharsets.UTF_8));
+        parser = Jwts.parser().verifyWith(signingKey).build();
+        verifiedTokens = Caffeine.newBuilder()
+                .maximumSize(cacheMaximumSize)
+                .expireAfter(new Expiry<String, AuthenticatedUser>() {
+                    @Override
+                    public long expireAfterCreate(String token, AuthenticatedUser user, long currentTime) {
+                        long untilExpiry = Duration.between(Instant.now(), user.getExpiresAt()).toNanos();
+                        return Math.max(0, Math.min(untilExpiry, cacheTtl.toNanos()));
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String token, AuthenticatedUser user,
+                                                  long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+
+                    @Override
+                    public long expireAfterRead(String token, AuthenticatedUser user,
+                                                long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .recordStats()
+                .build();
+
+        CaffeineCacheMetrics.monitor(meterRegistry, verifiedTokens, "jwt.verified-tokens");
+        cachedTimer = verifyTimer("cached");
+        verifiedTimer = verifyTimer("verified");
+        invalidTimer = verifyTimer("invalid");
+    }
+
+    private Timer verifyTimer(String result) {
+        return Timer.builder("pigeon.jwt.verify")
+                .description("Token verification, by whether the verified-token cache answered")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    // Verifies the signature at most once per token while it stays cached; throws JwtException if invalid
+    public AuthenticatedUser authenticate(String token) {
+        long start = System.nanoTime();
+        AuthenticatedUser cached = verifiedTokens.getIfPresent(token);
+        if (cached != null) {
+            if (cached.getExpiresAt().isAfter(Instant.now())) {
+                cachedTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                return cached;
+            }
+            verifiedTokens.invalidate(token);
+        }
+
+        Claims claims;
+        try {
+            claims = extractAllClaims(token);
+        } catch (RuntimeException e) {
+            invalidTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            throw e;
+        }
+        AuthenticatedUser user = new AuthenticatedUser(
+                claims.get("userId", Long.class),
+                claims.getSubject(),
+                claims.getExpiration().toInstant());
+        verifiedTokens.put(token, user);
+        verifiedTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        return user;
     }
 
     public String extractPhone(String token) {
-        return extractClaim(token, Claims::getSubject);
+        return authenticate(token).getPhone();
     }
 
     public Date extractExpiration(String token) {
-        return extractClaim(token, Claims::getExpiration);
+        return Date.from(authenticate(token).getExpiresAt());
     }
 
     public <T> T extractClaim(String token, Function<Claims, T> claimsResolver) {
@@ -40,15 +138,7 @@ public class JwtUtil {
     }
 
     private Claims extractAllClaims(String token) {
-        return Jwts.parserBuilder()
-                .setSigningKey(getSigningKey())
-                .build()
-                .parseClaimsJws(token)
-                .getBody();
-    }
-
-    private Boolean isTokenExpired(String token) {
-        return extractExpiration(token).before(new Date());
+        return parser.parseSignedClaims(token).getPayload();
     }
 
     public String generateToken(String phone, Long userId) {
@@ -58,22 +148,25 @@ public class JwtUtil {
     }
 
     private String createToken(Map<String, Object> claims, String subject) {
+        long now = System.currentTimeMillis();
         return Jwts.builder()
-                .setClaims(claims)
-                .setSubject(subject)
-                .setIssuedAt(new Date(System.currentTimeMillis()))
-                .setExpiration(new Date(System.currentTimeMillis() + expiration))
-                .signWith(getSigningKey(), SignatureAlgorithm.HS256)
+                .claims(claims)
+                .subject(subject)
+                .issuedAt(new Date(now))
+                .expiration(new Date(now + expiration))
+                .signWith(signingKey, Jwts.SIG.HS256)
                 .compact();
     }
 
     public Boolean validateToken(String token, String phone) {
-        final String extractedPhone = extractPhone(token);
-        return (extractedPhone.equals(phone) && !isTokenExpired(token));
+        try {
+            return authenticate(token).getPhone().equals(phone);
+        } catch (JwtException e) {
+            return false;
+        }
     }
 
     public Long extractUserId(String token) {
-        Claims claims = extractAllClaims(token);
-        return claims.get("userId", Long.class);
+        return authenticate(token).getUserId();
     }
 }
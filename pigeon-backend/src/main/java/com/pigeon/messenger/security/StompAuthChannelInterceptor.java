@@ -0,0 +1,103 @@
+package com.pigeon.messenger.security;
+
+import com.pigeon.messenger.service.ConversationParticipantIndex;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageDeliveryException;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.MessageHeaderAccessor;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.stereotype.Component;
+
+import java.security.Principal;
+import java.util.ArrayList;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// Authenticates the STOMP session once, at CONNECT, and authorizes every SUBSCRIBE and SEND against the
+// principal stored on the session. Conversation topics are checked against the in-memory participant
+// index, so no frame costs a database query. SEND is only allowed to /app destinations. A rejected
+// frame becomes a STOMP ERROR for the client.
+@Component
+public class StompAuthChannelInterceptor implements ChannelInterceptor {
+
+    // /topic/conversations/{id} plus its /receipts and /flights sub-topics
+    private static final Pattern CONVERSATION_TOPIC = Pattern.compile("^/topic/conversations/(\\d+)(/receipts|/flights)?$");
+
+    private static final String APP_PREFIX = "/app/";
+
+    @Autowired
+    private JwtUtil jwtUtil;
+
+    @Autowired
+    private ConversationParticipantIndex participantIndex;
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        StompHeaderAccessor accessor = MessageHeaderAccessor.getAccessor(message, StompHeaderAccessor.class);
+        if (accessor == null || accessor.getCommand() == null) {
+            return message;
+        }
+
+        switch (accessor.getCommand()) {
+            case CONNECT -> accessor.setUser(authenticate(accessor));
+            case SUBSCRIBE -> authorizeSubscribe(currentUser(accessor), accessor.getDestination());
+            case SEND -> {
+                currentUser(accessor);
+                authorizeSend(accessor.getDestination());
+            }
+            default -> {
+            }
+        }
+        return message;
+    }
+
+    private Authentication authenticate(StompHeaderAccessor accessor) {
+        String header = accessor.getFirstNativeHeader("Authorization");
+        if (header == null || !header.startsWith("Bearer ")) {
+            throw new MessageDeliveryException("Missing bearer token");
+        }
+        try {
+            AuthenticatedUser user = jwtUtil.authenticate(header.substring(7));
+            return new UsernamePasswordAuthenticationToken(user, null, new ArrayList<>());
+        } catch (RuntimeException e) {
+            throw new MessageDeliveryException("Invalid token");
+        }
+    }
+
+    private AuthenticatedUser currentUser(StompHeaderAccessor accessor) {
+        Principal principal = accessor.getUser();
+        if (principal instanceof Authentication authentication
+                && authentication.getPrincipal() instanceof AuthenticatedUser user) {
+            return user;
+        }
+        throw new MessageDeliveryException("Not authenticated");
+    }
+
+    // Clients may only SEND to application handlers; a SEND to a broker destination (/topic, /queue,
+    // /user) would be passed straight to other subscribers as a forged message, receipt or event
+    private void authorizeSend(String destination) {
+        if (destination == null || !destination.startsWith(APP_PREFIX)) {
+            throw new MessageDeliveryException("Not allowed to send to " + destination);
+        }
+    }
+
+    private void authorizeSubscribe(AuthenticatedUser user, String destination) {
+        if (destination == null) {
+            throw new MessageDeliveryException("Missing destination");
+        }
+        // Per-user destinations are resolved to the session's own principal by the broker
+        if (destination.startsWith("/user/")) {
+            return;
+        }
+        Matcher matcher = CONVERSATION_TOPIC.matcher(destination);
+        if (!matcher.matches()
+                || !participantIndex.isParticipant(Long.parseLong(matcher.group(1)), user.getUserId())) {
+            throw new MessageDeliveryException("Not allowed to subscribe to " + destination);
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package com.pigeon.messenger.service;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import com.pigeon.messenger.entity.Conversation;
+import com.pigeon.messenger.repository.ConversationRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+
+// conversation id -> its two participants, for authorizing STOMP subscriptions and history reads without
+// a query per frame or request. Participants never change once a conversation exists, so entries need no
+// invalidation; a conversation is loaded once per node on first use. Unknown ids are remembered only
+// briefly, since the conversation may be created moments later on another node.
+@Service
+public class ConversationParticipantIndex {
+
+    private static final long[] UNKNOWN = new long[0];
+
+    @Autowired
+    private ConversationRepository conversationRepository;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${pigeon.participants.cache-size:1000000}")
+    private long cacheSize;
+
+    @Value("${pigeon.participants.unknown-ttl:PT30S}")
+    private Duration unknownTtl;
+
+    private LoadingCache<Long, long[]> participants;
+
+    @PostConstruct
+    public void init() {
+        participants = Caffeine.newBuilder()
+                .maximumSize(cacheSize)
+                .expireAfter(new Expiry<Long, long[]>() {
+                    @Override
+                    public long expireAfterCreate(Long id, long[] pair, long currentTime) {
+                        return pair == UNKNOWN ? unknownTtl.toNanos() : Long.MAX_VALUE;
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(Long id, long[] pair, long currentTime, long currentDuration) {
+                        return expireAfterCreate(id, pair, currentTime);
+                    }
+
+                    @Override
+                    public long expireAfterRead(Long id, long[] pair, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .recordStats()
+                .build(id -> conversationRepository.findById(id)
+                        .map(c -> new long[]{c.getParticipantAId(), c.getParticipantBId()})
+                        .orElse(UNKNOWN));
+        CaffeineCacheMetrics.monitor(meterRegistry, participants, "conversation-participants");
+    }
+
+    public boolean isParticipant(Long conversationId, Long userId) {
+        if (conversationId == null || userId == null) {
+            return false;
+        }
+        long[] pair = participants.get(conversationId);
+        return pair.length == 2 && (pair[0] == userId || pair[1] == userId);
+    }
+
+    // Both participants, or an empty array for an unknown conversation
+    public long[] participantsOf(Long conversationId) {
+        return participants.get(conversationId).clone();
+    }
+
+    // Called when a conversation is created on this node, replacing any "unknown" entry
+    public void register(Conversation conversation) {
+        participants.put(conversation.getId(),
+                new long[]{conversation.getParticipantAId(), conversation.getParticipantBId()});
+    }
+}
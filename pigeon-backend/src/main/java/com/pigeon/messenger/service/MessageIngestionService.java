@@ -0,0 +1,427 @@
+package com.pigeon.messenger.service;
+
+import com.pigeon.messenger.dto.MessageDTO;
+import com.pigeon.messenger.entity.Conversation;
+import com.pigeon.messenger.entity.Flight;
+import com.pigeon.messenger.entity.Message;
+import com.pigeon.messenger.entity.User;
+import com.pigeon.messenger.repository.ConversationReadStateRepository;
+import com.pigeon.messenger.repository.ConversationRepository;
+import com.pigeon.messenger.repository.FlightRepository;
+import com.pigeon.messenger.repository.UserRepository;
+import com.pigeon.messenger.service.flight.FlightEngine;
+import com.pigeon.messenger.service.search.MessageSearch;
+import com.pigeon.messenger.service.sync.UserChangeLog;
+import com.pigeon.messenger.service.weather.WeatherService;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.HttpStatus;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+// Coalesces concurrent sends into one transaction per batch: JDBC batch inserts of the messages, their
+// flights and outbox events, one last_message_id update and one unread bump per touched conversation.
+// A batch is flushed when it reaches flush-size or when its oldest send has waited max-latency.
+@Service
+public class MessageIngestionService {
+
+    private static final Logger log = LoggerFactory.getLogger(MessageIngestionService.class);
+
+    @Autowired
+    private ConversationRepository conversationRepository;
+
+    @Autowired
+    private ConversationReadStateRepository readStateRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private FlightRepository flightRepository;
+
+    @Autowired
+    private OutboxService outboxService;
+
+    @Autowired
+    private FlightEngine flightEngine;
+
+    @Autowired
+    private MessageSearch messageSearch;
+
+    @Autowired
+    private UserChangeLog changeLog;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${pigeon.ingest.flush-size:100}")
+    private int flushSize;
+
+    @Value("${pigeon.ingest.max-latency:PT0.005S}")
+    private Duration maxLatency;
+
+    @Value("${pigeon.ingest.queue-capacity:10000}")
+    private int queueCapacity;
+
+    @Value("${pigeon.ingest.submit-timeout:PT5S}")
+    private Duration submitTimeout;
+
+    private BlockingQueue<PendingSend> queue;
+    private TransactionTemplate transactionTemplate;
+    private Thread flusher;
+    private volatile boolean running;
+
+    private Timer queueWaitTimer;
+    private Timer batchTimer;
+    private Timer persistTimer;
+    private Timer conversationUpdateTimer;
+    private Timer flightsTimer;
+    private DistributionSummary batchSizes;
+
+    @PostConstruct
+    public void start() {
+        queue = new ArrayBlockingQueue<>(queueCapacity);
+        transactionTemplate = new TransactionTemplate(transactionManager);
+
+        Gauge.builder("pigeon.ingest.queue.depth", () -> queue.size())
+                .description("Sends waiting for the next batch")
+                .register(meterRegistry);
+        queueWaitTimer = Timer.builder("pigeon.ingest.queue.wait")
+                .description("Time a send waits in the queue before its batch starts")
+                .register(meterRegistry);
+        batchTimer = Timer.builder("pigeon.ingest.batch")
+                .description("One batch transaction, commit included")
+                .register(meterRegistry);
+        persistTimer = phaseTimer("persist");
+        conversationUpdateTimer = phaseTimer("conversation-update");
+        flightsTimer = phaseTimer("flights");
+        batchSizes = DistributionSummary.builder("pigeon.ingest.batch.size")
+                .description("Sends per batch")
+                .register(meterRegistry);
+
+        running = true;
+        flusher = new Thread(this::runFlushLoop, "message-ingest");
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        flusher.interrupt();
+        flusher.join(submitTimeout.toMillis());
+    }
+
+    public MessageDTO send(Long conversationId, Long senderId, String body, String clientNonce) {
+        Message message = new Message();
+        message.setConversationId(conversationId);
+        message.setSenderId(senderId);
+        message.setBody(body);
+        message.setClientNonce(clientNonce);
+        message.setStatus("sent");
+
+        PendingSend pending = new PendingSend(message);
+        try {
+            if (!queue.offer(pending, submitTimeout.toMillis(), TimeUnit.MILLISECONDS)) {
+                throw new RuntimeException("Message ingestion queue is full");
+            }
+            return pending.result.get(submitTimeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while sending message", e);
+        } catch (TimeoutException e) {
+            throw new RuntimeException("Timed out waiting for message to be stored", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new RuntimeException(e.getCause());
+        }
+    }
+
+    private Timer phaseTimer(String phase) {
+        return Timer.builder("pigeon.ingest.phase")
+                .description("Time spent in one phase of a batch transaction")
+                .tag("phase", phase)
+                .register(meterRegistry);
+    }
+
+    private void runFlushLoop() {
+        List<PendingSend> batch = new ArrayList<>(flushSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                PendingSend first = queue.poll(1, TimeUnit.SECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+
+                long deadline = System.nanoTime() + maxLatency.toNanos();
+                while (batch.size() < flushSize) {
+                    queue.drainTo(batch, flushSize - batch.size());
+                    long remaining = deadline - System.nanoTime();
+                    if (batch.size() >= flushSize || remaining <= 0) {
+                        break;
+                    }
+                    PendingSend next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+
+                flushOrFail(batch);
+            } catch (InterruptedException e) {
+                // stop() interrupts while a batch may be half collected; its senders are waiting, so store
+                // it instead of dropping it
+                flushOrFail(batch);
+                if (running) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void flushOrFail(List<PendingSend> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        try {
+            flush(batch);
+        } catch (RuntimeException e) {
+            log.error("Message ingestion flush failed", e);
+            batch.forEach(p -> p.result.completeExceptionally(e));
+        }
+    }
+
+    private void flush(List<PendingSend> batch) {
+        long flushStart = System.nanoTime();
+        for (PendingSend pending : batch) {
+            queueWaitTimer.record(flushStart - pending.enqueuedAt, TimeUnit.NANOSECONDS);
+        }
+        batchSizes.record(batch.size());
+
+        try {
+            batchTimer.record(() -> persist(batch));
+            complete(batch);
+        } catch (DataIntegrityViolationException e) {
+            // One send in the batch broke a constraint (e.g. a concurrent retry of the same client_nonce);
+            // isolate it by replaying the batch one send per transaction
+            for (PendingSend pending : batch) {
+                pending.message.setId(null);
+                pending.dto = null;
+                try {
+                    persist(List.of(pending));
+                    complete(List.of(pending));
+                } catch (RuntimeException single) {
+                    pending.result.completeExceptionally(single);
+                }
+            }
+        }
+    }
+
+    private void complete(List<PendingSend> batch) {
+        List<MessageDTO> stored = new ArrayList<>(batch.size());
+        for (PendingSend pending : batch) {
+            if (pending.dto == null) {
+                continue;
+            }
+            pending.result.complete(pending.dto);
+            stored.add(pending.dto);
+        }
+        if (!stored.isEmpty()) {
+            messageSearch.indexAll(stored);
+        }
+    }
+
+    private void persist(List<PendingSend> batch) {
+        transactionTemplate.executeWithoutResult(status -> {
+            List<Long> conversationIds = batch.stream()
+                    .map(p -> p.message.getConversationId())
+                    .distinct()
+                    .collect(Collectors.toList());
+            Map<Long, Conversation> conversations = conversationRepository.findAllById(conversationIds).stream()
+                    .collect(Collectors.toMap(Conversation::getId, Function.identity()));
+
+            List<PendingSend> accepted = new ArrayList<>(batch.size());
+            for (PendingSend pending : batch) {
+                Conversation conversation = conversations.get(pending.message.getConversationId());
+                if (conversation == null) {
+                    pending.result.completeExceptionally(new RuntimeException("Conversation not found"));
+                } else if (!isParticipant(conversation, pending.message.getSenderId())) {
+                    pending.result.completeExceptionally(
+                            new ResponseStatusException(HttpStatus.FORBIDDEN, "Not a participant of this conversation"));
+                } else {
+                    accepted.add(pending);
+                }
+            }
+            if (accepted.isEmpty()) {
+                return;
+            }
+
+            long phaseStart = System.nanoTime();
+            List<Message> saved = accepted.stream().map(p -> p.message).collect(Collectors.toList());
+            insertMessages(saved);
+
+            // messages is partitioned and cannot enforce (sender_id, client_nonce) itself (V13)
+            List<Object[]> nonces = new ArrayList<>();
+            for (Message message : saved) {
+                if (message.getClientNonce() != null) {
+                    nonces.add(new Object[]{message.getSenderId(), message.getClientNonce(), message.getId(),
+                            Timestamp.valueOf(message.getCreatedAt())});
+                }
+            }
+            if (!nonces.isEmpty()) {
+                // Same created_at as the message, so a duplicate lookup can find its partition
+                jdbcTemplate.batchUpdate("INSERT INTO message_nonces (sender_id, client_nonce, message_id, created_at) " +
+                        "VALUES (?, ?, ?, ?)", nonces);
+            }
+
+            Map<Long, Message> lastMessages = new HashMap<>();
+            for (int i = 0; i < saved.size(); i++) {
+                Message message = saved.get(i);
+                accepted.get(i).dto = MessageDTO.fromEntity(message);
+                outboxService.enqueue("/topic/conversations/" + message.getConversationId(), accepted.get(i).dto);
+                lastMessages.merge(message.getConversationId(), message, (a, b) -> a.getId() > b.getId() ? a : b);
+            }
+            phaseStart = recordPhase(persistTimer, phaseStart);
+
+            // last_message_id here and the unread bump below are both timed as the conversation-update phase
+            lastMessages.forEach((conversationId, message) ->
+                    conversationRepository.advanceLastMessage(conversationId, message.getId(), message.getCreatedAt()));
+            long conversationUpdateNanos = System.nanoTime() - phaseStart;
+            phaseStart += conversationUpdateNanos;
+
+            // Every message departs with the sender's active pigeon; the flight engine lands it at its ETA
+            Map<Long, Long> recipients = new HashMap<>();
+            for (Message message : saved) {
+                recipients.put(message.getId(), recipientOf(conversations.get(message.getConversationId()), message));
+            }
+            List<Long> userIds = new ArrayList<>(recipients.values());
+            saved.forEach(message -> userIds.add(message.getSenderId()));
+            Map<Long, User> users = userRepository.findAllById(userIds.stream().distinct().collect(Collectors.toList()))
+                    .stream()
+                    .collect(Collectors.toMap(User::getId, Function.identity()));
+
+            List<Flight> flights = new ArrayList<>(saved.size());
+            for (Message message : saved) {
+                User sender = users.get(message.getSenderId());
+                User recipient = users.get(recipients.get(message.getId()));
+                flights.add(flightEngine.plan(message,
+                        sender != null ? sender.getActivePigeonId() : null,
+                        WeatherService.areaCodeOf(sender != null ? sender.getPhone() : null),
+                        WeatherService.areaCodeOf(recipient != null ? recipient.getPhone() : null)));
+            }
+            flightEngine.scheduleAfterCommit(flightRepository.saveAll(flights));
+            phaseStart = recordPhase(flightsTimer, phaseStart);
+
+            // Unread is bumped per (conversation, recipient); in a 1:1 conversation the recipient
+            // depends on the sender, so group by both
+            Map<Long, Map<Long, Integer>> recipientDeltas = new HashMap<>();
+            for (Message message : saved) {
+                Long recipientId = recipients.get(message.getId());
+                recipientDeltas.computeIfAbsent(message.getConversationId(), id -> new HashMap<>())
+                        .merge(recipientId, 1, Integer::sum);
+            }
+            recipientDeltas.forEach((conversationId, deltas) ->
+                    deltas.forEach((recipientId, delta) ->
+                            readStateRepository.incrementUnread(conversationId, recipientId, delta)));
+
+            // Last, so the per-user change cursors stay locked only until the commit right after
+            List<UserChangeLog.Change> changes = new ArrayList<>(saved.size() * 2);
+            for (Message message : saved) {
+                changes.add(new UserChangeLog.Change(message.getSenderId(), UserChangeLog.Kind.MESSAGE,
+                        message.getConversationId(), message.getId()));
+                changes.add(new UserChangeLog.Change(recipients.get(message.getId()), UserChangeLog.Kind.MESSAGE,
+                        message.getConversationId(), message.getId()));
+            }
+            changeLog.record(changes);
+            conversationUpdateTimer.record(conversationUpdateNanos + System.nanoTime() - phaseStart,
+                    TimeUnit.NANOSECONDS);
+        });
+    }
+
+    // Ids are taken from the sequence here, in the flushing transaction, rather than from blocks reserved
+    // per node, so ids keep following send time when several nodes ingest (V15)
+    private void insertMessages(List<Message> messages) {
+        List<Long> ids = jdbcTemplate.queryForList(
+                "SELECT nextval('messages_id_seq') FROM generate_series(1, ?)", Long.class, messages.size());
+        Collections.sort(ids);
+        LocalDateTime now = LocalDateTime.now();
+        List<Object[]> rows = new ArrayList<>(messages.size());
+        for (int i = 0; i < messages.size(); i++) {
+            Message message = messages.get(i);
+            message.setId(ids.get(i));
+            message.setCreatedAt(now);
+            rows.add(new Object[]{message.getId(), message.getConversationId(), message.getSenderId(),
+                    message.getBody(), message.getClientNonce(), Timestamp.valueOf(now), message.getStatus()});
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO messages (id, conversation_id, sender_id, body, client_nonce, " +
+                "created_at, status) VALUES (?, ?, ?, ?, ?, ?, ?)", rows);
+    }
+
+    private static long recordPhase(Timer timer, long phaseStart) {
+        long now = System.nanoTime();
+        timer.record(now - phaseStart, TimeUnit.NANOSECONDS);
+        return now;
+    }
+
+    private static boolean isParticipant(Conversation conversation, Long userId) {
+        return userId.equals(conversation.getParticipantAId()) || userId.equals(conversation.getParticipantBId());
+    }
+
+    private static Long recipientOf(Conversation conversation, Message message) {
+        return message.getSenderId().equals(conversation.getParticipantAId())
+                ? conversation.getParticipantBId()
+                : conversation.getParticipantAId();
+    }
+
+    private static class PendingSend {
+        private final Message message;
+        private final CompletableFuture<MessageDTO> result = new CompletableFuture<>();
+        private final long enqueuedAt = System.nanoTime();
+        private MessageDTO dto;
+
+        private PendingSend(Message message) {
+            this.message = message;
+        }
+    }
+}
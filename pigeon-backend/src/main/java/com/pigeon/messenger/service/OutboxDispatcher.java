@@ -0,0 +1,144 @@
+package com.pigeon.messenger.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pigeon.messenger.entity.OutboxEvent;
+import com.pigeon.messenger.repository.OutboxEventRepository;
+import com.pigeon.messenger.service.broadcast.BroadcastEnvelope;
+import com.pigeon.messenger.service.broadcast.BroadcastService;
+import com.pigeon.messenger.service.broadcast.UserEventRouter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+// Drains outbox_events to the broker in batches, off the request thread. Rows are deleted in the same
+// transaction that locked them, after the broker accepted them, so delivery is at-least-once.
+@Service
+public class OutboxDispatcher {
+
+    private static final Logger log = LoggerFactory.getLogger(OutboxDispatcher.class);
+
+    @Autowired
+    private OutboxEventRepository outboxEventRepository;
+
+    @Autowired
+    private BroadcastService broadcastService;
+
+    @Autowired
+    private UserEventRouter userEventRouter;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${pigeon.outbox.batch-size:500}")
+    private int batchSize;
+
+    @Value("${pigeon.outbox.poll-interval:PT1S}")
+    private Duration pollInterval;
+
+    private final Semaphore wakeUps = new Semaphore(0);
+    private TransactionTemplate transactionTemplate;
+    private Thread dispatcher;
+    private volatile boolean running;
+
+    private Timer publishTimer;
+    private Timer fanoutTimer;
+
+    @PostConstruct
+    public void start() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        publishTimer = Timer.builder("pigeon.outbox.publish")
+                .description("Handing one batch of events to the broker")
+                .register(meterRegistry);
+        fanoutTimer = Timer.builder("pigeon.message.fanout")
+                .description("From an event being enqueued with its send to the broker accepting it")
+                .register(meterRegistry);
+        running = true;
+        dispatcher = new Thread(this::runDispatchLoop, "outbox-dispatch");
+        dispatcher.setDaemon(true);
+        dispatcher.start();
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        dispatcher.interrupt();
+        dispatcher.join(pollInterval.toMillis());
+    }
+
+    public void wakeUp() {
+        wakeUps.release();
+    }
+
+    private void runDispatchLoop() {
+        while (running) {
+            try {
+                // Polling catches events committed by other nodes or left over from a crash
+                wakeUps.tryAcquire(pollInterval.toMillis(), TimeUnit.MILLISECONDS);
+                wakeUps.drainPermits();
+
+                int dispatched;
+                do {
+                    dispatched = dispatchBatch();
+                } while (dispatched == batchSize && running);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e) {
+                log.error("Outbox dispatch failed; will retry", e);
+            }
+        }
+    }
+
+    private int dispatchBatch() {
+        Integer count = transactionTemplate.execute(status -> {
+            List<OutboxEvent> events = outboxEventRepository.lockNextBatch(batchSize);
+            if (events.isEmpty()) {
+                return 0;
+            }
+
+            List<BroadcastEnvelope> envelopes = new ArrayList<>(events.size());
+            for (OutboxEvent event : events) {
+                try {
+                    envelopes.add(new BroadcastEnvelope(null, event.getDestination(),
+                            objectMapper.readTree(event.getPayload())));
+                } catch (IOException e) {
+                    log.warn("Dropping unreadable outbox event {}", event.getId(), e);
+                }
+            }
+            publishTimer.record(() -> broadcastService.publishAll(userEventRouter.route(envelopes)));
+
+            LocalDateTime published = LocalDateTime.now();
+            for (OutboxEvent event : events) {
+                if (event.getCreatedAt() != null) {
+                    fanoutTimer.record(Duration.between(event.getCreatedAt(), published));
+                }
+            }
+
+            outboxEventRepository.deleteAllInBatch(events);
+            return events.size();
+        });
+        return count != null ? count : 0;
+    }
+}
@@ -0,0 +1,81 @@
+package com.pigeon.messenger.service;
+
+import com.pigeon.messenger.dto.PigeonDTO;
+import com.pigeon.messenger.dto.PigeonSnapshot;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+// Derives a pigeon's energy and mood at read time from its stored base values, so nothing has to
+// rewrite pigeon rows as time passes. Only user actions write, with the relative updates in
+// PigeonRepository: feed directly, sends in batches through SendQuotaService.
+// Mood rules follow calculateMood in pigeon-state.js.
+@Component
+public class PigeonVitalsCalculator {
+
+    public static final int MAX_ENERGY = 100;
+
+    @Value("${pigeon.vitals.energy-regen-per-hour:5}")
+    private double energyRegenPerHour;
+
+    public int energyAt(PigeonSnapshot pigeon, LocalDateTime now) {
+        int base = pigeon.energy() != null ? pigeon.energy() : MAX_ENERGY;
+        if (pigeon.energyUpdatedAt() == null || !now.isAfter(pigeon.energyUpdatedAt())) {
+            return clamp(base);
+        }
+        double hours = Duration.between(pigeon.energyUpdatedAt(), now).toMillis() / 3_600_000.0;
+        return clamp((int) Math.floor(base + hours * energyRegenPerHour));
+    }
+
+    public String moodAt(PigeonSnapshot pigeon, LocalDateTime now) {
+        int energy = energyAt(pigeon, now);
+        if (energy < 20) {
+            return "sad";
+        }
+        if (energy < 50) {
+            return "tired";
+        }
+
+        LocalDateTime lastActivity = latest(pigeon.lastFedAt(), pigeon.lastMessageSentAt());
+        if (lastActivity == null) {
+            return "neutral";
+        }
+
+        Duration sinceActivity = Duration.between(lastActivity, now);
+        if (sinceActivity.compareTo(Duration.ofHours(1)) < 0) {
+            return "happy";
+        }
+        if (sinceActivity.compareTo(Duration.ofHours(24)) < 0) {
+            return "neutral";
+        }
+        return "tired";
+    }
+
+    // Passed to the PigeonRepository vitals updates, which fold the accrued recovery in SQL
+    public double energyRegenPerHour() {
+        return energyRegenPerHour;
+    }
+
+    // How long passive recovery takes to restore the given amount of energy
+    public Duration timeToRecover(int energy) {
+        return Duration.ofMillis((long) Math.ceil(energy / energyRegenPerHour * 3_600_000));
+    }
+
+    public PigeonDTO toDTO(PigeonSnapshot pigeon) {
+        LocalDateTime now = LocalDateTime.now();
+        return new PigeonDTO(pigeon.id(), pigeon.name(), pigeon.spriteKey(), pigeon.level(), pigeon.xp(),
+                moodAt(pigeon, now), energyAt(pigeon, now), pigeon.trait());
+    }
+
+    private static int clamp(int energy) {
+        return Math.max(0, Math.min(MAX_ENERGY, energy));
+    }
+
+    private static LocalDateTime latest(LocalDateTime a, LocalDateTime b) {
+        if (a == null) return b;
+        if (b == null) return a;
+        return a.isAfter(b) ? a : b;
+    }
+}
@@ -0,0 +1,136 @@
+package com.pigeon.messenger.service;
+
+import com.pigeon.messenger.dto.AckRequest;
+import com.pigeon.messenger.dto.MessageDTO;
+import com.pigeon.messenger.dto.ReceiptDTO;
+import com.pigeon.messenger.entity.Conversation;
+import com.pigeon.messenger.entity.ConversationReadState;
+import com.pigeon.messenger.repository.ConversationReadStateRepository;
+import com.pigeon.messenger.repository.ConversationRepository;
+import com.pigeon.messenger.service.sync.UserChangeLog;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+@Service
+public class ReceiptService {
+
+    @Autowired
+    private ConversationRepository conversationRepository;
+
+    @Autowired
+    private ConversationReadStateRepository readStateRepository;
+
+    @Autowired
+    private OutboxService outboxService;
+
+    @Autowired
+    private UserChangeLog changeLog;
+
+    @Transactional
+    public void acknowledge(Long userId, List<AckRequest> acks) {
+        // Collapse the batch to one watermark pair per conversation
+        Map<Long, AckRequest> merged = new LinkedHashMap<>();
+        for (AckRequest ack : acks) {
+            if (ack.getConversationId() == null) {
+                continue;
+            }
+            merged.merge(ack.getConversationId(), ack, (a, b) -> new AckRequest(
+                    a.getConversationId(),
+                    max(a.getDeliveredUpTo(), b.getDeliveredUpTo()),
+                    max(a.getReadUpTo(), b.getReadUpTo())));
+        }
+
+        Map<Long, Conversation> conversations = conversationRepository.findAllById(merged.keySet()).stream()
+                .collect(Collectors.toMap(Conversation::getId, Function.identity()));
+
+        List<UserChangeLog.Change> changes = new ArrayList<>();
+        for (AckRequest ack : merged.values()) {
+            Conversation conversation = conversations.get(ack.getConversationId());
+            if (conversation == null || !isParticipant(conversation, userId)) {
+                continue;
+            }
+
+            if (ack.getReadUpTo() != null) {
+                readStateRepository.advanceReadWatermark(conversation.getId(), userId, ack.getReadUpTo());
+            }
+            if (ack.getDeliveredUpTo() != null
+                    && (ack.getReadUpTo() == null || ack.getDeliveredUpTo() > ack.getReadUpTo())) {
+                readStateRepository.advanceDeliveredWatermark(conversation.getId(), userId, ack.getDeliveredUpTo());
+            }
+
+            broadcast(conversation.getId(), userId);
+            // Both sides sync the watermark: the reader's other devices and the sender's ticks
+            changes.add(new UserChangeLog.Change(conversation.getParticipantAId(), UserChangeLog.Kind.RECEIPT,
+                    conversation.getId(), null));
+            changes.add(new UserChangeLog.Change(conversation.getParticipantBId(), UserChangeLog.Kind.RECEIPT,
+                    conversation.getId(), null));
+        }
+        changeLog.record(changes);
+    }
+
+    @Transactional
+    public void markRead(Long userId, Long conversationId, Long upToMessageId) {
+        Long watermark = upToMessageId;
+        if (watermark == null) {
+            Conversation conversation = conversationRepository.findById(conversationId)
+                    .orElseThrow(() -> new RuntimeException("Conversation not found"));
+            watermark = conversation.getLastMessageId();
+        }
+        if (watermark != null) {
+            acknowledge(userId, List.of(new AckRequest(conversationId, null, watermark)));
+        }
+    }
+
+    // Derives each message's delivery status from the recipient's watermarks
+    public void applyReceipts(Long conversationId, List<MessageDTO> messages) {
+        if (messages.isEmpty()) {
+            return;
+        }
+        List<ConversationReadState> states = readStateRepository.findByConversationId(conversationId);
+
+        for (MessageDTO message : messages) {
+            ConversationReadState recipient = states.stream()
+                    .filter(s -> !s.getUserId().equals(message.getSenderId()))
+                    .findFirst()
+                    .orElse(null);
+            message.setStatus(statusFor(message.getId(), recipient));
+        }
+    }
+
+    private String statusFor(Long messageId, ConversationReadState recipient) {
+        if (recipient == null) {
+            return "sent";
+        }
+        if (recipient.getLastReadMessageId() != null && messageId <= recipient.getLastReadMessageId()) {
+            return "read";
+        }
+        if (recipient.getLastDeliveredMessageId() != null && messageId <= recipient.getLastDeliveredMessageId()) {
+            return "delivered";
+        }
+        return "sent";
+    }
+
+    private void broadcast(Long conversationId, Long userId) {
+        readStateRepository.findByConversationIdAndUserId(conversationId, userId)
+                .ifPresent(state -> outboxService.enqueue(
+                        "/topic/conversations/" + conversationId + "/receipts", ReceiptDTO.fromEntity(state)));
+    }
+
+    private static boolean isParticipant(Conversation conversation, Long userId) {
+        return userId.equals(conversation.getParticipantAId()) || userId.equals(conversation.getParticipantBId());
+    }
+
+    private static Long max(Long a, Long b) {
+        if (a == null) return b;
+        if (b == null) return a;
+        return Math.max(a, b);
+    }
+}
@@ -0,0 +1,39 @@
+package com.pigeon.messenger.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.pigeon.messenger.dto.MessageDTO;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+// Fast path for retried sends: recently accepted (sender, client_nonce) pairs and the message they produced.
+// The primary key of message_nonces (sender_id, client_nonce) remains the source of truth.
+@Component
+public class SendDedupeCache {
+
+    private final Cache<String, MessageDTO> cache;
+
+    public SendDedupeCache(@Value("${pigeon.send.dedupe-cache-size:100000}") long maximumSize,
+                           @Value("${pigeon.send.dedupe-cache-ttl:PT10M}") Duration ttl) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(ttl)
+                .build();
+    }
+
+    public MessageDTO get(Long senderId, String clientNonce) {
+        return clientNonce == null ? null : cache.getIfPresent(key(senderId, clientNonce));
+    }
+
+    public void put(Long senderId, String clientNonce, MessageDTO message) {
+        if (clientNonce != null) {
+            cache.put(key(senderId, clientNonce), message);
+        }
+    }
+
+    private static String key(Long senderId, String clientNonce) {
+        return senderId + ":" + clientNonce;
+    }
+}
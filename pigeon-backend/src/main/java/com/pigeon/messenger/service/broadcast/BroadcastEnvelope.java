@@ -0,0 +1,15 @@
+package com.pigeon.messenger.service.broadcast;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BroadcastEnvelope {
+    private String originNodeId;
+    private String destination;
+    private JsonNode payload;
+}
@@ -0,0 +1,14 @@
+package com.pigeon.messenger.service.broadcast;
+
+import java.util.List;
+
+// Fans a payload out to every STOMP subscriber of a destination, on whichever node they are connected
+public interface BroadcastService {
+    void publish(String destination, Object payload);
+
+    default void publishAll(List<BroadcastEnvelope> envelopes) {
+        for (BroadcastEnvelope envelope : envelopes) {
+            publish(envelope.getDestination(), envelope.getPayload());
+        }
+    }
+}
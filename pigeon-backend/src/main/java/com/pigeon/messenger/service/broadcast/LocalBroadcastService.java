@@ -0,0 +1,30 @@
+package com.pigeon.messenger.service.broadcast;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.stereotype.Service;
+
+// Single-node mode: hand the payload straight to this node's broker
+@Service
+@ConditionalOnProperty(name = "pigeon.broadcast.mode", havingValue = "local", matchIfMissing = true)
+public class LocalBroadcastService implements BroadcastService {
+
+    @Autowired(required = false)
+    private SimpMessagingTemplate messagingTemplate;
+
+    @Autowired
+    private UserSessionRegistry sessionRegistry;
+
+    @Override
+    public void publish(String destination, Object payload) {
+        // Events for users without a session here would be resolved to no session by the broker anyway
+        Long userId = UserEventRouter.userIdOf(destination);
+        if (userId != null && !sessionRegistry.isConnected(userId)) {
+            return;
+        }
+        if (messagingTemplate != null) {
+            messagingTemplate.convertAndSend(destination, payload);
+        }
+    }
+}
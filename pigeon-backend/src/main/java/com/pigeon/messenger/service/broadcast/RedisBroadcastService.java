@@ -0,0 +1,146 @@
+package com.pigeon.messenger.service.broadcast;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// Cluster mode: every node publishes to one Redis channel and every node (itself included)
+// relays what it receives to its local broker, so subscribers on any node see every event.
+// Per-user events go only to the nodes holding a session of that user, each on its own node channel,
+// as looked up in RedisUserSessionDirectory; if the lookup fails they fall back to the shared channel.
+@Service
+@ConditionalOnProperty(name = "pigeon.broadcast.mode", havingValue = "redis")
+public class RedisBroadcastService implements BroadcastService, MessageListener {
+
+    private static final Logger log = LoggerFactory.getLogger(RedisBroadcastService.class);
+
+    @Value("${pigeon.broadcast.redis-channel:pigeon:broadcast}")
+    private String channel;
+
+    @Autowired
+    private StringRedisTemplate redisTemplate;
+
+    @Autowired
+    private RedisUserSessionDirectory sessionDirectory;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired(required = false)
+    private SimpMessagingTemplate messagingTemplate;
+
+    @Override
+    public void publish(String destination, Object payload) {
+        publishAll(List.of(new BroadcastEnvelope(null, destination, objectMapper.valueToTree(payload))));
+    }
+
+    // One pipelined round trip to Redis for the whole batch, plus one for the session lookup
+    @Override
+    public void publishAll(List<BroadcastEnvelope> envelopes) {
+        if (envelopes.isEmpty()) {
+            return;
+        }
+        Map<String, List<BroadcastEnvelope>> byChannel = new LinkedHashMap<>();
+        List<BroadcastEnvelope> perUser = new ArrayList<>();
+        for (BroadcastEnvelope envelope : envelopes) {
+            if (UserEventRouter.userIdOf(envelope.getDestination()) != null) {
+                perUser.add(envelope);
+            } else {
+                byChannel.computeIfAbsent(channel, c -> new ArrayList<>()).add(envelope);
+            }
+        }
+        routeToNodes(perUser, byChannel);
+
+        List<byte[]> channels = new ArrayList<>();
+        List<byte[]> serialized = new ArrayList<>();
+        try {
+            for (Map.Entry<String, List<BroadcastEnvelope>> entry : byChannel.entrySet()) {
+                byte[] channelBytes = entry.getKey().getBytes(StandardCharsets.UTF_8);
+                for (BroadcastEnvelope envelope : entry.getValue()) {
+                    BroadcastEnvelope stamped = new BroadcastEnvelope(getNodeId(), envelope.getDestination(), envelope.getPayload());
+                    channels.add(channelBytes);
+                    serialized.add(objectMapper.writeValueAsBytes(stamped));
+                }
+            }
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException("Failed to serialize broadcast batch", e);
+        }
+        redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            for (int i = 0; i < serialized.size(); i++) {
+                connection.publish(channels.get(i), serialized.get(i));
+            }
+            return null;
+        });
+    }
+
+    private void routeToNodes(List<BroadcastEnvelope> perUser, Map<String, List<BroadcastEnvelope>> byChannel) {
+        if (perUser.isEmpty()) {
+            return;
+        }
+        Map<Long, Set<String>> nodesByUser;
+        try {
+            nodesByUser = sessionDirectory.nodesOf(perUser.stream()
+                    .map(envelope -> UserEventRouter.userIdOf(envelope.getDestination()))
+                    .distinct()
+                    .toList());
+        } catch (RuntimeException e) {
+            log.warn("User session lookup failed; sending user events to every node", e);
+            byChannel.computeIfAbsent(channel, c -> new ArrayList<>()).addAll(perUser);
+            return;
+        }
+        for (BroadcastEnvelope envelope : perUser) {
+            // Users connected nowhere are skipped; they catch up through /api/sync
+            for (String node : nodesByUser.getOrDefault(UserEventRouter.userIdOf(envelope.getDestination()), Set.of())) {
+                byChannel.computeIfAbsent(nodeChannel(node), c -> new ArrayList<>()).add(envelope);
+            }
+        }
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        if (messagingTemplate == null) {
+            return;
+        }
+        try {
+            BroadcastEnvelope envelope = objectMapper.readValue(
+                    new String(message.getBody(), StandardCharsets.UTF_8), BroadcastEnvelope.class);
+            messagingTemplate.convertAndSend(envelope.getDestination(), envelope.getPayload());
+        } catch (Exception e) {
+            log.warn("Dropping malformed broadcast envelope", e);
+        }
+    }
+
+    public String getChannel() {
+        return channel;
+    }
+
+    // This node's own channel, for events addressed to users connected here
+    public String getNodeChannel() {
+        return nodeChannel(getNodeId());
+    }
+
+    public String getNodeId() {
+        return sessionDirectory.getNodeId();
+    }
+
+    private String nodeChannel(String node) {
+        return channel + ":node:" + node;
+    }
+}
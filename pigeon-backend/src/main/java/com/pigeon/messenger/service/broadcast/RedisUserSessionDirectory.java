@@ -0,0 +1,175 @@
+package com.pigeon.messenger.service.broadcast;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+// Cluster-wide view of which nodes hold sessions of which user: one Redis set of node ids per user,
+// written only when a user's first session opens or last one closes on a node. Looking up the nodes of a
+// whole outbox batch is one pipelined round trip. Every heartbeat-interval a node re-adds its users and
+// extends their keys, which repairs lost updates; a crashed node's entries expire after session-ttl.
+@Component
+@ConditionalOnProperty(name = "pigeon.broadcast.mode", havingValue = "redis")
+public class RedisUserSessionDirectory implements UserSessionRegistry.Listener {
+
+    private static final Logger log = LoggerFactory.getLogger(RedisUserSessionDirectory.class);
+
+    private static final String KEY_PREFIX = "pigeon:user-nodes:";
+
+    // Users per pipelined heartbeat round trip
+    private static final int HEARTBEAT_BATCH = 1000;
+
+    private final String nodeId = UUID.randomUUID().toString();
+
+    @Autowired
+    private StringRedisTemplate redisTemplate;
+
+    @Autowired
+    private UserSessionRegistry sessionRegistry;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${pigeon.sessions.heartbeat-interval:PT30S}")
+    private Duration heartbeatInterval;
+
+    @Value("${pigeon.sessions.ttl:PT2M}")
+    private Duration sessionTtl;
+
+    private Counter redisErrors;
+    private Thread heartbeat;
+    private volatile boolean running;
+
+    @PostConstruct
+    public void start() {
+        redisErrors = Counter.builder("pigeon.sessions.redis.errors").register(meterRegistry);
+        sessionRegistry.addListener(this);
+        running = true;
+        heartbeat = new Thread(this::runHeartbeatLoop, "user-session-heartbeat");
+        heartbeat.setDaemon(true);
+        heartbeat.start();
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        heartbeat.interrupt();
+        heartbeat.join(1000);
+        // Leave the directory right away instead of waiting for the keys to expire
+        try {
+            List<Long> users = new ArrayList<>(sessionRegistry.connectedUsers());
+            for (int i = 0; i < users.size(); i += HEARTBEAT_BATCH) {
+                List<Long> batch = users.subList(i, Math.min(users.size(), i + HEARTBEAT_BATCH));
+                redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                    for (Long userId : batch) {
+                        connection.setCommands().sRem(key(userId), node());
+                    }
+                    return null;
+                });
+            }
+        } catch (RuntimeException e) {
+            log.warn("Could not remove this node from the user session directory", e);
+        }
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    @Override
+    public void firstSessionOpened(long userId) {
+        try {
+            redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                connection.setCommands().sAdd(key(userId), node());
+                connection.keyCommands().expire(key(userId), sessionTtl.toSeconds());
+                return null;
+            });
+        } catch (RuntimeException e) {
+            // The next heartbeat adds the user again
+            redisErrors.increment();
+            log.debug("Session directory: adding user {} failed", userId, e);
+        }
+    }
+
+    @Override
+    public void lastSessionClosed(long userId) {
+        try {
+            redisTemplate.opsForSet().remove(KEY_PREFIX + userId, nodeId);
+        } catch (RuntimeException e) {
+            // Costs only wasted publishes to this node until the key expires
+            redisErrors.increment();
+            log.debug("Session directory: removing user {} failed", userId, e);
+        }
+    }
+
+    // user id -> nodes holding a session of that user; users connected nowhere are left out
+    public Map<Long, Set<String>> nodesOf(Collection<Long> userIds) {
+        List<Long> users = new ArrayList<>(userIds);
+        List<Object> members = redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            for (Long userId : users) {
+                connection.setCommands().sMembers(key(userId));
+            }
+            return null;
+        });
+        Map<Long, Set<String>> nodes = new HashMap<>();
+        for (int i = 0; i < users.size(); i++) {
+            if (members.get(i) instanceof Set<?> userNodes && !userNodes.isEmpty()) {
+                nodes.put(users.get(i), userNodes.stream().map(String::valueOf).collect(Collectors.toSet()));
+            }
+        }
+        return nodes;
+    }
+
+    private void runHeartbeatLoop() {
+        while (running) {
+            try {
+                Thread.sleep(heartbeatInterval.toMillis());
+                List<Long> users = new ArrayList<>(sessionRegistry.connectedUsers());
+                for (int i = 0; i < users.size(); i += HEARTBEAT_BATCH) {
+                    List<Long> batch = users.subList(i, Math.min(users.size(), i + HEARTBEAT_BATCH));
+                    redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                        for (Long userId : batch) {
+                            connection.setCommands().sAdd(key(userId), node());
+                            connection.keyCommands().expire(key(userId), sessionTtl.toSeconds());
+                        }
+                        return null;
+                    });
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e) {
+                redisErrors.increment();
+                log.warn("User session directory heartbeat failed; will retry", e);
+            }
+        }
+    }
+
+    private byte[] node() {
+        return nodeId.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static byte[] key(long userId) {
+        return (KEY_PREFIX + userId).getBytes(StandardCharsets.UTF_8);
+    }
+}
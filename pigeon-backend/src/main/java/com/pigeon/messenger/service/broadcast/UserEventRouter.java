@@ -0,0 +1,76 @@
+package com.pigeon.messenger.service.broadcast;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pigeon.messenger.dto.UserEventDTO;
+import com.pigeon.messenger.service.ConversationParticipantIndex;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// With pigeon.events.delivery=user-queue, conversation broadcasts are rewritten into one event per
+// participant on /user/{userId}/queue/events. A client then holds one subscription however many
+// conversations it has, and the broker resolves each event by user name to that user's sessions instead
+// of matching it against every conversation subscription on the node. topic keeps the old destinations.
+@Component
+public class UserEventRouter {
+
+    public static final String USER_PREFIX = "/user/";
+    public static final String EVENTS_QUEUE = "/queue/events";
+
+    // Destinations the outbox writes: /topic/conversations/{id} and its /receipts and /flights sub-topics
+    private static final Pattern CONVERSATION_TOPIC = Pattern.compile("^/topic/conversations/(\\d+)(?:/(receipts|flights))?$");
+
+    @Autowired
+    private ConversationParticipantIndex participantIndex;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${pigeon.events.delivery:user-queue}")
+    private String delivery;
+
+    public List<BroadcastEnvelope> route(List<BroadcastEnvelope> envelopes) {
+        if (!"user-queue".equals(delivery)) {
+            return envelopes;
+        }
+        List<BroadcastEnvelope> routed = new ArrayList<>(envelopes.size() * 2);
+        for (BroadcastEnvelope envelope : envelopes) {
+            Matcher matcher = CONVERSATION_TOPIC.matcher(envelope.getDestination());
+            if (!matcher.matches()) {
+                routed.add(envelope);
+                continue;
+            }
+            long conversationId = Long.parseLong(matcher.group(1));
+            String type = matcher.group(2) == null ? "message"
+                    : matcher.group(2).equals("receipts") ? "receipt" : "flight";
+            JsonNode event = objectMapper.valueToTree(new UserEventDTO(type, conversationId, envelope.getPayload()));
+            for (long userId : participantIndex.participantsOf(conversationId)) {
+                routed.add(new BroadcastEnvelope(envelope.getOriginNodeId(), userDestination(userId), event));
+            }
+        }
+        return routed;
+    }
+
+    public static String userDestination(long userId) {
+        return USER_PREFIX + userId + EVENTS_QUEUE;
+    }
+
+    // The user a /user/{userId}/... destination is addressed to; null for any other destination
+    public static Long userIdOf(String destination) {
+        if (destination == null || !destination.startsWith(USER_PREFIX)) {
+            return null;
+        }
+        int end = destination.indexOf('/', USER_PREFIX.length());
+        try {
+            return Long.parseLong(destination.substring(USER_PREFIX.length(), end < 0 ? destination.length() : end));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package com.pigeon.messenger.service.broadcast;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.messaging.SessionConnectedEvent;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+
+import java.security.Principal;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+// Users with at least one STOMP session on this node, kept from the session lifecycle events. Listeners
+// hear when a user's first session here opens and its last one closes; RedisUserSessionDirectory uses
+// that to tell the other nodes where to send the user's events.
+@Component
+public class UserSessionRegistry {
+
+    public interface Listener {
+        void firstSessionOpened(long userId);
+
+        void lastSessionClosed(long userId);
+    }
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private final Map<String, Long> userBySession = new ConcurrentHashMap<>();
+    private final Map<Long, Integer> sessionsByUser = new ConcurrentHashMap<>();
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+
+    @PostConstruct
+    public void init() {
+        Gauge.builder("pigeon.websocket.users", sessionsByUser, Map::size)
+                .description("Users with at least one STOMP session on this node")
+                .register(meterRegistry);
+    }
+
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    public boolean isConnected(long userId) {
+        return sessionsByUser.containsKey(userId);
+    }
+
+    public Set<Long> connectedUsers() {
+        return sessionsByUser.keySet();
+    }
+
+    @EventListener
+    public void onConnected(SessionConnectedEvent event) {
+        Long userId = userIdOf(event.getUser());
+        String sessionId = event.getMessage().getHeaders().get("simpSessionId", String.class);
+        if (userId == null || sessionId == null || userBySession.putIfAbsent(sessionId, userId) != null) {
+            return;
+        }
+        if (sessionsByUser.merge(userId, 1, Integer::sum) == 1) {
+            listeners.forEach(listener -> listener.firstSessionOpened(userId));
+        }
+    }
+
+    @EventListener
+    public void onDisconnect(SessionDisconnectEvent event) {
+        Long userId = userBySession.remove(event.getSessionId());
+        if (userId == null) {
+            return;
+        }
+        if (sessionsByUser.computeIfPresent(userId, (id, count) -> count > 1 ? count - 1 : null) == null) {
+            listeners.forEach(listener -> listener.lastSessionClosed(userId));
+        }
+    }
+
+    private static Long userIdOf(Principal user) {
+        if (user == null) {
+            return null;
+        }
+        try {
+            return Long.parseLong(user.getName());
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+}
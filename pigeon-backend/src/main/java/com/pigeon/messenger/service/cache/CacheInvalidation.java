@@ -0,0 +1,14 @@
+package com.pigeon.messenger.service.cache;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CacheInvalidation {
+    private String originNodeId;
+    private String cache;
+    private String key;
+}
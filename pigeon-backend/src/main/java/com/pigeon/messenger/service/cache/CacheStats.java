@@ -0,0 +1,19 @@
+package com.pigeon.messenger.service.cache;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CacheStats {
+    private String name;
+    private long localSize;
+    private long localHits;
+    private long localMisses;
+    private long remoteHits;
+    private long remoteMisses;
+    private long remoteErrors;
+    private long loads;
+}
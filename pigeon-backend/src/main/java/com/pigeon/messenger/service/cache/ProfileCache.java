@@ -0,0 +1,83 @@
+package com.pigeon.messenger.service.cache;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pigeon.messenger.dto.PigeonSnapshot;
+import com.pigeon.messenger.dto.UserDTO;
+import com.pigeon.messenger.repository.PigeonRepository;
+import com.pigeon.messenger.repository.UserRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.List;
+
+// User profiles and pigeon parties change only on explicit user actions, so reads are served from
+// memory and the writers (activate, feed, register, send) invalidate. Cached parties hold stored base
+// vitals; PigeonVitalsCalculator still derives the live values per read, so they never go stale.
+// Cached values are shared between requests; parties are cached as immutable snapshots, never entities.
+@Service
+public class ProfileCache {
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private PigeonRepository pigeonRepository;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired(required = false)
+    private RedisCacheBackplane backplane;
+
+    @Value("${pigeon.cache.local-size:100000}")
+    private long localSize;
+
+    @Value("${pigeon.cache.local-ttl:PT5M}")
+    private Duration localTtl;
+
+    @Value("${pigeon.cache.remote-ttl:PT30M}")
+    private Duration remoteTtl;
+
+    private TwoTierCache<Long, UserDTO> users;
+    private TwoTierCache<Long, List<PigeonSnapshot>> parties;
+
+    @PostConstruct
+    public void init() {
+        users = new TwoTierCache<>("user", Long::valueOf, localSize, localTtl, remoteTtl, backplane, objectMapper,
+                objectMapper.getTypeFactory().constructType(UserDTO.class));
+        parties = new TwoTierCache<>("party", Long::valueOf, localSize, localTtl, remoteTtl, backplane, objectMapper,
+                objectMapper.getTypeFactory().constructCollectionType(List.class, PigeonSnapshot.class));
+        users.bindTo(meterRegistry);
+        parties.bindTo(meterRegistry);
+    }
+
+    // Null when the user does not exist
+    public UserDTO getUser(Long userId) {
+        return users.get(userId, id -> userRepository.findById(id).map(UserDTO::fromEntity).orElse(null));
+    }
+
+    public List<PigeonSnapshot> getParty(Long userId) {
+        return parties.get(userId, id -> pigeonRepository.findByUserIdAndIsInPartyTrue(id).stream()
+                .map(PigeonSnapshot::fromEntity)
+                .toList());
+    }
+
+    public void evictUser(Long userId) {
+        users.invalidate(userId);
+    }
+
+    public void evictParty(Long userId) {
+        parties.invalidate(userId);
+    }
+
+    public List<CacheStats> stats() {
+        return List.of(users.stats(), parties.stats());
+    }
+}
@@ -0,0 +1,124 @@
+package com.pigeon.messenger.service.cache;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Shared L2 for every TwoTierCache plus the invalidation channel that keeps each node's L1 honest:
+// a node that changes an entry deletes the Redis copy and tells the other nodes to drop theirs.
+// Every key has a generation, bumped on invalidation; a loader stores its result only if the generation
+// is still the one it saw before reading the database, so a load that raced a write cannot put the old
+// value back into L2 for the whole remote-ttl.
+@Component
+@ConditionalOnProperty(name = "pigeon.cache.l2", havingValue = "redis")
+public class RedisCacheBackplane implements MessageListener {
+
+    private static final Logger log = LoggerFactory.getLogger(RedisCacheBackplane.class);
+
+    private static final String GENERATION_SUFFIX = ":gen";
+
+    // KEYS: generation, entry. ARGV: generation the value was loaded under ('' = none), value, ttl millis
+    private static final RedisScript<Long> SET_IF_CURRENT = new DefaultRedisScript<>("""
+            if (redis.call('GET', KEYS[1]) or '') ~= ARGV[1] then return 0 end
+            redis.call('SET', KEYS[2], ARGV[2], 'PX', ARGV[3])
+            return 1
+            """, Long.class);
+
+    // KEYS: generation, entry. ARGV: generation ttl millis
+    private static final RedisScript<Long> INVALIDATE = new DefaultRedisScript<>("""
+            local generation = redis.call('INCR', KEYS[1])
+            redis.call('PEXPIRE', KEYS[1], ARGV[1])
+            redis.call('DEL', KEYS[2])
+            return generation
+            """, Long.class);
+
+    record Entry(String json, String generation) {
+    }
+
+    private final String nodeId = UUID.randomUUID().toString();
+    private final Map<String, TwoTierCache<?, ?>> caches = new ConcurrentHashMap<>();
+
+    @Value("${pigeon.cache.key-prefix:pigeon:cache:}")
+    private String keyPrefix;
+
+    @Value("${pigeon.cache.invalidation-channel:pigeon:cache-invalidation}")
+    private String channel;
+
+    @Autowired
+    private StringRedisTemplate redisTemplate;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    void register(TwoTierCache<?, ?> cache) {
+        caches.put(cache.getName(), cache);
+    }
+
+    // An L2 entry and the generation it was loaded under, read in one round trip; either may be null
+    Entry get(String key) {
+        List<String> values = redisTemplate.opsForValue().multiGet(
+                List.of(keyPrefix + key, keyPrefix + key + GENERATION_SUFFIX));
+        return values != null ? new Entry(values.get(0), values.get(1)) : new Entry(null, null);
+    }
+
+    // Stores the entry unless it was invalidated since the loader read the generation; false if refused
+    boolean setIfCurrent(String key, String generation, String json, Duration ttl) {
+        Long stored = redisTemplate.execute(SET_IF_CURRENT,
+                List.of(keyPrefix + key + GENERATION_SUFFIX, keyPrefix + key),
+                generation != null ? generation : "", json, String.valueOf(ttl.toMillis()));
+        return stored != null && stored == 1;
+    }
+
+    // Deletes the entry and bumps its generation, so loads that started before can no longer store theirs
+    void invalidate(String key, Duration generationTtl) {
+        redisTemplate.execute(INVALIDATE, List.of(keyPrefix + key + GENERATION_SUFFIX, keyPrefix + key),
+                String.valueOf(generationTtl.toMillis()));
+    }
+
+    void publishInvalidation(String cache, String key) {
+        try {
+            redisTemplate.convertAndSend(channel,
+                    objectMapper.writeValueAsString(new CacheInvalidation(nodeId, cache, key)));
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException("Failed to serialize cache invalidation for " + cache, e);
+        }
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        try {
+            CacheInvalidation invalidation = objectMapper.readValue(
+                    new String(message.getBody(), StandardCharsets.UTF_8), CacheInvalidation.class);
+            if (nodeId.equals(invalidation.getOriginNodeId())) {
+                return;
+            }
+            TwoTierCache<?, ?> cache = caches.get(invalidation.getCache());
+            if (cache != null) {
+                cache.invalidateLocal(invalidation.getKey());
+            }
+        } catch (Exception e) {
+            log.warn("Dropping malformed cache invalidation", e);
+        }
+    }
+
+    public String getChannel() {
+        return channel;
+    }
+}
@@ -0,0 +1,171 @@
+package com.pigeon.messenger.service.cache;
+
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+// Read-through cache: in-process Caffeine (L1) in front of a shared Redis copy (L2) in front of the
+// loader. Without a backplane it is L1 only. Redis failures are counted and treated as misses, so a
+// Redis outage degrades to database reads instead of failing requests. Loader results of null are
+// not cached. Values are shared between callers, so they should be immutable.
+public class TwoTierCache<K, V> {
+
+    private static final Logger log = LoggerFactory.getLogger(TwoTierCache.class);
+
+    private static final RedisCacheBackplane.Entry NO_ENTRY = new RedisCacheBackplane.Entry(null, null);
+
+    private final String name;
+    private final Function<String, K> keyParser;
+    private final Cache<K, V> local;
+    private final RedisCacheBackplane backplane;
+    private final ObjectMapper objectMapper;
+    private final JavaType valueType;
+    private final Duration remoteTtl;
+
+    private final LongAdder remoteHits = new LongAdder();
+    private final LongAdder remoteMisses = new LongAdder();
+    private final LongAdder remoteErrors = new LongAdder();
+    private final LongAdder loads = new LongAdder();
+
+    public TwoTierCache(String name, Function<String, K> keyParser, long localMaximumSize, Duration localTtl,
+                        Duration remoteTtl, RedisCacheBackplane backplane, ObjectMapper objectMapper,
+                        JavaType valueType) {
+        this.name = name;
+        this.keyParser = keyParser;
+        this.local = Caffeine.newBuilder()
+                .maximumSize(localMaximumSize)
+                .expireAfterWrite(localTtl)
+                .recordStats()
+                .build();
+        this.backplane = backplane;
+        this.objectMapper = objectMapper;
+        this.valueType = valueType;
+        this.remoteTtl = remoteTtl;
+        if (backplane != null) {
+            backplane.register(this);
+        }
+    }
+
+    public V get(K key, Function<K, V> loader) {
+        // Caffeine computes at most once per key per node, so a burst of misses makes one remote lookup
+        return local.get(key, k -> {
+            RedisCacheBackplane.Entry remote = getRemote(k);
+            if (remote.json() != null) {
+                V value = deserialize(k, remote.json());
+                if (value != null) {
+                    return value;
+                }
+            }
+            loads.increment();
+            V loaded = loader.apply(k);
+            if (loaded != null) {
+                putRemote(k, remote, loaded);
+            }
+            return loaded;
+        });
+    }
+
+    // Drops the entry here, in Redis and on every other node; call after the change is committed
+    public void invalidate(K key) {
+        local.invalidate(key);
+        if (backplane == null) {
+            return;
+        }
+        try {
+            backplane.invalidate(remoteKey(key), remoteTtl);
+            backplane.publishInvalidation(name, String.valueOf(key));
+        } catch (RuntimeException e) {
+            remoteErrors.increment();
+            log.warn("Cache {}: remote invalidation of {} failed; other nodes keep it until it expires",
+                    name, key, e);
+        }
+    }
+
+    // Invalidation received from another node; keys travel as strings
+    void invalidateLocal(String key) {
+        local.invalidate(keyParser.apply(key));
+    }
+
+    // L1 through the standard Caffeine binder (cache.gets, cache.size, ...), L2 and loads as pigeon.cache.*
+    public void bindTo(MeterRegistry registry) {
+        CaffeineCacheMetrics.monitor(registry, local, name);
+        FunctionCounter.builder("pigeon.cache.remote", remoteHits, LongAdder::sum)
+                .tags("cache", name, "result", "hit").register(registry);
+        FunctionCounter.builder("pigeon.cache.remote", remoteMisses, LongAdder::sum)
+                .tags("cache", name, "result", "miss").register(registry);
+        FunctionCounter.builder("pigeon.cache.remote", remoteErrors, LongAdder::sum)
+                .tags("cache", name, "result", "error").register(registry);
+        FunctionCounter.builder("pigeon.cache.loads", loads, LongAdder::sum)
+                .tags("cache", name).register(registry);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public CacheStats stats() {
+        com.github.benmanes.caffeine.cache.stats.CacheStats localStats = local.stats();
+        return new CacheStats(name, local.estimatedSize(), localStats.hitCount(), localStats.missCount(),
+                remoteHits.sum(), remoteMisses.sum(), remoteErrors.sum(), loads.sum());
+    }
+
+    // Entry with a null json on a miss; also when Redis failed, and then without a generation, so the
+    // loaded value is not written back
+    private RedisCacheBackplane.Entry getRemote(K key) {
+        if (backplane == null) {
+            return NO_ENTRY;
+        }
+        try {
+            RedisCacheBackplane.Entry entry = backplane.get(remoteKey(key));
+            if (entry.json() == null) {
+                remoteMisses.increment();
+            } else {
+                remoteHits.increment();
+            }
+            return entry;
+        } catch (RuntimeException e) {
+            remoteErrors.increment();
+            log.debug("Cache {}: remote read of {} failed", name, key, e);
+            return NO_ENTRY;
+        }
+    }
+
+    private V deserialize(K key, String json) {
+        try {
+            return objectMapper.readValue(json, valueType);
+        } catch (Exception e) {
+            remoteErrors.increment();
+            log.debug("Cache {}: unreadable remote entry for {}", name, key, e);
+            return null;
+        }
+    }
+
+    private void putRemote(K key, RedisCacheBackplane.Entry seen, V value) {
+        if (backplane == null || seen == NO_ENTRY) {
+            return;
+        }
+        try {
+            if (!backplane.setIfCurrent(remoteKey(key), seen.generation(), objectMapper.writeValueAsString(value),
+                    remoteTtl)) {
+                log.debug("Cache {}: {} was invalidated while loading; not stored remotely", name, key);
+            }
+        } catch (Exception e) {
+            remoteErrors.increment();
+            log.debug("Cache {}: remote write of {} failed", name, key, e);
+        }
+    }
+
+    private String remoteKey(K key) {
+        return name + ":" + key;
+    }
+}
@@ -0,0 +1,216 @@
+package com.pigeon.messenger.service.flight;
+
+import com.pigeon.messenger.dto.FlightDTO;
+import com.pigeon.messenger.entity.Flight;
+import com.pigeon.messenger.entity.Message;
+import com.pigeon.messenger.repository.FlightRepository;
+import com.pigeon.messenger.service.OutboxService;
+import com.pigeon.messenger.service.weather.WeatherService;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+
+// Drives flights from 'flying' to 'delivered' on the server. Pending ETAs live in an in-memory
+// TimingWheel; a single ticker thread collects due flights and lands them in batches with one bulk
+// update and one outbox event per flight. The wheel is rebuilt from the flights table on startup.
+@Service
+public class FlightEngine {
+
+    private static final Logger log = LoggerFactory.getLogger(FlightEngine.class);
+
+    @Autowired
+    private FlightRepository flightRepository;
+
+    @Autowired
+    private OutboxService outboxService;
+
+    @Autowired
+    private WeatherService weatherService;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Value("${pigeon.flight.tick:PT0.1S}")
+    private Duration tick;
+
+    @Value("${pigeon.flight.wheel-size:512}")
+    private int wheelSize;
+
+    @Value("${pigeon.flight.landing-batch-size:1000}")
+    private int landingBatchSize;
+
+    @Value("${pigeon.flight.rebuild-page-size:10000}")
+    private int rebuildPageSize;
+
+    @Value("${pigeon.flight.retry-delay:PT5S}")
+    private Duration retryDelay;
+
+    private final Object lock = new Object();
+    private TimingWheel wheel;
+    private List<Long> dueNow = new ArrayList<>();
+    private TransactionTemplate transactionTemplate;
+    private Thread ticker;
+    private volatile boolean running;
+
+    @PostConstruct
+    public void init() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        synchronized (lock) {
+            wheel = new TimingWheel(tick.toMillis(), wheelSize, System.currentTimeMillis());
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        running = true;
+        ticker = new Thread(this::run, "flight-engine");
+        ticker.setDaemon(true);
+        ticker.start();
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        if (ticker != null) {
+            ticker.interrupt();
+            ticker.join(tick.toMillis() * 10);
+        }
+    }
+
+    // Flight for a freshly stored message; the caller persists it and then calls scheduleAfterCommit.
+    // The ETA uses cached weather only, so planning never waits on a live lookup.
+    public Flight plan(Message message, Long pigeonId, String fromAreaCode, String toAreaCode) {
+        LocalDateTime departAt = message.getCreatedAt() != null ? message.getCreatedAt() : LocalDateTime.now();
+
+        Flight flight = new Flight();
+        flight.setMessageId(message.getId());
+        flight.setPigeonId(pigeonId);
+        flight.setDepartAt(departAt);
+        flight.setEtaAt(departAt.plus(weatherService.estimateFlightDuration(fromAreaCode, toAreaCode)));
+        flight.setState("flying");
+        return flight;
+    }
+
+    public void scheduleAfterCommit(List<Flight> flights) {
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                synchronized (lock) {
+                    for (Flight flight : flights) {
+                        schedule(flight.getId(), flight.getEtaAt());
+                    }
+                }
+            }
+        });
+    }
+
+    public int pendingCount() {
+        synchronized (lock) {
+            return wheel.size() + dueNow.size();
+        }
+    }
+
+    private void run() {
+        try {
+            rebuild();
+        } catch (RuntimeException e) {
+            log.error("Flight engine rebuild failed; continuing with flights scheduled since startup", e);
+        }
+
+        long tickMs = tick.toMillis();
+        while (running) {
+            try {
+                Thread.sleep(tickMs);
+
+                List<Long> due;
+                synchronized (lock) {
+                    due = dueNow;
+                    dueNow = new ArrayList<>();
+                    wheel.advance(System.currentTimeMillis(), due::add);
+                }
+
+                for (int from = 0; from < due.size(); from += landingBatchSize) {
+                    land(due.subList(from, Math.min(from + landingBatchSize, due.size())));
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e) {
+                log.error("Flight engine tick failed", e);
+            }
+        }
+    }
+
+    // Streams every in-flight row by id in keyset pages; never holds more than one page of entities
+    private void rebuild() {
+        long afterId = 0;
+        int restored = 0;
+        while (running) {
+            List<FlightRepository.FlyingFlight> page =
+                    flightRepository.findFlyingAfter(afterId, PageRequest.of(0, rebuildPageSize));
+            if (page.isEmpty()) {
+                break;
+            }
+            synchronized (lock) {
+                for (FlightRepository.FlyingFlight flight : page) {
+                    schedule(flight.getId(), flight.getEtaAt());
+                }
+            }
+            restored += page.size();
+            afterId = page.get(page.size() - 1).getId();
+        }
+        log.info("Flight engine restored {} in-flight flights", restored);
+    }
+
+    private void land(List<Long> flightIds) {
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                List<Long> claimed = flightRepository.lockFlying(flightIds);
+                if (claimed.isEmpty()) {
+                    return;
+                }
+                flightRepository.markDelivered(claimed);
+                for (FlightDTO flight : flightRepository.findDTOsByIdIn(claimed)) {
+                    outboxService.enqueue("/topic/conversations/" + flight.getConversationId() + "/flights", flight);
+                }
+            });
+        } catch (RuntimeException e) {
+            log.warn("Landing {} flights failed; retrying in {}", flightIds.size(), retryDelay, e);
+            long retryAt = System.currentTimeMillis() + retryDelay.toMillis();
+            synchronized (lock) {
+                for (Long id : flightIds) {
+                    if (!wheel.schedule(id, retryAt)) {
+                        dueNow.add(id);
+                    }
+                }
+            }
+        }
+    }
+
+    // Caller holds lock
+    private void schedule(Long flightId, LocalDateTime etaAt) {
+        long etaMs = etaAt != null
+                ? etaAt.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli()
+                : 0;
+        if (!wheel.schedule(flightId, etaMs)) {
+            dueNow.add(flightId);
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package com.pigeon.messenger.service.flight;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.LongConsumer;
+
+// Hierarchical timing wheel keyed by epoch millis. Level 0 has wheelSize slots of tickMs each; every
+// level above covers wheelSize times the span of the one below and is created only when needed.
+// Scheduling is O(1), and each entry moves down at most once per level before it fires, so millions
+// of pending ETAs cost two longs apiece and no per-entry timers. Not thread-safe; callers synchronize.
+public class TimingWheel {
+
+    private final long tickMs;
+    private final int wheelSize;
+    private final List<Slot[]> levels = new ArrayList<>();
+    private final List<Long> levelTicks = new ArrayList<>();
+    private long currentTime;
+    private int size;
+
+    public TimingWheel(long tickMs, int wheelSize, long startMs) {
+        this.tickMs = tickMs;
+        this.wheelSize = wheelSize;
+        this.currentTime = startMs - Math.floorMod(startMs, tickMs);
+        addLevel();
+    }
+
+    // Returns false if the entry is already due; the caller fires it immediately
+    public boolean schedule(long id, long etaMs) {
+        if (etaMs < currentTime) {
+            return false;
+        }
+        for (int level = 0; ; level++) {
+            if (level == levels.size()) {
+                addLevel();
+            }
+            long levelTick = levelTicks.get(level);
+            long virtualSlot = Math.floorDiv(etaMs, levelTick);
+            if (virtualSlot - Math.floorDiv(currentTime, levelTick) < wheelSize) {
+                levels.get(level)[(int) Math.floorMod(virtualSlot, (long) wheelSize)].add(id, etaMs);
+                size++;
+                return true;
+            }
+        }
+    }
+
+    // Moves the clock to nowMs, handing every entry whose ETA has passed to expired
+    public void advance(long nowMs, LongConsumer expired) {
+        if (size == 0) {
+            // Nothing pending, so no slot can fire: jump straight to now
+            if (nowMs >= currentTime + tickMs) {
+                currentTime = nowMs - Math.floorMod(nowMs, tickMs);
+            }
+            return;
+        }
+
+        while (currentTime + tickMs <= nowMs) {
+            currentTime += tickMs;
+
+            // Every entry in the slot that just closed has an ETA before currentTime
+            Slot closed = levels.get(0)[(int) Math.floorMod(currentTime / tickMs - 1, (long) wheelSize)];
+            size -= closed.size;
+            closed.drain((id, eta) -> expired.accept(id));
+
+            // On a level boundary, pull that level's next slot down into the finer levels
+            for (int level = 1; level < levels.size(); level++) {
+                long levelTick = levelTicks.get(level);
+                if (Math.floorMod(currentTime, levelTick) != 0) {
+                    break;
+                }
+                Slot cascading = levels.get(level)[(int) Math.floorMod(currentTime / levelTick, (long) wheelSize)];
+                size -= cascading.size;
+                cascading.drain((id, eta) -> {
+                    if (!schedule(id, eta)) {
+                        expired.accept(id);
+                    }
+                });
+            }
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public long currentTime() {
+        return currentTime;
+    }
+
+    private void addLevel() {
+        long levelTick = levelTicks.isEmpty() ? tickMs : levelTicks.get(levelTicks.size() - 1) * wheelSize;
+        Slot[] slots = new Slot[wheelSize];
+        for (int i = 0; i < wheelSize; i++) {
+            slots[i] = new Slot();
+        }
+        levels.add(slots);
+        levelTicks.add(levelTick);
+    }
+
+    private interface EntryConsumer {
+        void accept(long id, long etaMs);
+    }
+
+    // Growable pair of primitive arrays; avoids an object per scheduled entry
+    private static class Slot {
+        private static final long[] EMPTY = new long[0];
+
+        private long[] ids = EMPTY;
+        private long[] etas = EMPTY;
+        private int size;
+
+        void add(long id, long etaMs) {
+            if (size == ids.length) {
+                int capacity = Math.max(4, size * 2);
+                ids = Arrays.copyOf(ids, capacity);
+                etas = Arrays.copyOf(etas, capacity);
+            }
+            ids[size] = id;
+            etas[size] = etaMs;
+            size++;
+        }
+
+        // Detaches the contents before handing them out, so the consumer may reschedule into this slot
+        void drain(EntryConsumer consumer) {
+            long[] drainedIds = ids;
+            long[] drainedEtas = etas;
+            int drainedSize = size;
+            ids = EMPTY;
+            etas = EMPTY;
+            size = 0;
+            for (int i = 0; i < drainedSize; i++) {
+                consumer.accept(drainedIds[i], drainedEtas[i]);
+            }
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package com.pigeon.messenger.service.history;
+
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pigeon.messenger.dto.MessageDTO;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+// Archived history in message_archive: per conversation, gzip'd JSON chunks of messages from one archived
+// month, newest first. Pages are served from chunk metadata (min/max id) plus only the payloads a page
+// needs, so paging into cold history costs one small index read and one or two decompressions.
+@Component
+public class ColdMessageStore {
+
+    // Chunk metadata rows read per page; a page spans one or two chunks, more only around month edges
+    private static final int CHUNK_SCAN = 64;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private JavaType chunkType;
+
+    @PostConstruct
+    public void init() {
+        chunkType = objectMapper.getTypeFactory().constructCollectionType(List.class, MessageDTO.class);
+    }
+
+    // newestFirst holds messages of one conversation from one month, sorted by id descending
+    public void append(long conversationId, LocalDate month, List<MessageDTO> newestFirst) {
+        jdbcTemplate.update("INSERT INTO message_archive " +
+                        "(conversation_id, min_id, max_id, message_count, partition_month, payload) " +
+                        "VALUES (?, ?, ?, ?, ?, ?)",
+                conversationId,
+                newestFirst.get(newestFirst.size() - 1).getId(),
+                newestFirst.get(0).getId(),
+                newestFirst.size(),
+                Date.valueOf(month),
+                compress(newestFirst));
+    }
+
+    // Newest first, ids below bound
+    public List<MessageDTO> before(long conversationId, long bound, int limit) {
+        List<long[]> chunks = jdbcTemplate.query("SELECT min_id, max_id FROM message_archive " +
+                        "WHERE conversation_id = ? AND min_id < ? ORDER BY max_id DESC LIMIT ?",
+                (rs, rowNum) -> new long[]{rs.getLong(1), rs.getLong(2)},
+                conversationId, bound, CHUNK_SCAN);
+        List<MessageDTO> page = new ArrayList<>();
+        for (long[] chunk : chunks) {
+            if (!MessageOrder.canImprove(page, chunk[1], false, limit)) {
+                break;
+            }
+            List<MessageDTO> messages = new ArrayList<>();
+            for (MessageDTO message : load(conversationId, chunk[0])) {
+                if (message.getId() < bound) {
+                    messages.add(message);
+                }
+            }
+            page = MessageOrder.merge(page, messages, false, limit);
+        }
+        return page;
+    }
+
+    // Oldest first, ids above bound
+    public List<MessageDTO> after(long conversationId, long bound, int limit) {
+        List<long[]> chunks = jdbcTemplate.query("SELECT min_id, max_id FROM message_archive " +
+                        "WHERE conversation_id = ? AND max_id > ? ORDER BY min_id ASC LIMIT ?",
+                (rs, rowNum) -> new long[]{rs.getLong(1), rs.getLong(2)},
+                conversationId, bound, CHUNK_SCAN);
+        List<MessageDTO> page = new ArrayList<>();
+        for (long[] chunk : chunks) {
+            if (!MessageOrder.canImprove(page, chunk[0], true, limit)) {
+                break;
+            }
+            List<MessageDTO> messages = new ArrayList<>();
+            List<MessageDTO> newestFirst = load(conversationId, chunk[0]);
+            for (int i = newestFirst.size() - 1; i >= 0; i--) {
+                if (newestFirst.get(i).getId() > bound) {
+                    messages.add(newestFirst.get(i));
+                }
+            }
+            page = MessageOrder.merge(page, messages, true, limit);
+        }
+        return page;
+    }
+
+    // One archived message, e.g. the inbox preview of a conversation that has been quiet for months
+    public MessageDTO find(long conversationId, long messageId) {
+        List<Long> chunks = jdbcTemplate.queryForList("SELECT min_id FROM message_archive " +
+                "WHERE conversation_id = ? AND min_id <= ? AND max_id >= ?", Long.class,
+                conversationId, messageId, messageId);
+        for (Long minId : chunks) {
+            for (MessageDTO message : load(conversationId, minId)) {
+                if (message.getId() == messageId) {
+                    return message;
+                }
+            }
+        }
+        return null;
+    }
+
+    public long maxArchivedId() {
+        Long max = jdbcTemplate.queryForObject("SELECT MAX(max_id) FROM message_archive", Long.class);
+        return max != null ? max : 0;
+    }
+
+    private List<MessageDTO> load(long conversationId, long minId) {
+        List<byte[]> payloads = jdbcTemplate.query(
+                "SELECT payload FROM message_archive WHERE conversation_id = ? AND min_id = ?",
+                (rs, rowNum) -> rs.getBytes(1), conversationId, minId);
+        return payloads.isEmpty() ? List.of() : decompress(payloads.get(0));
+    }
+
+    private byte[] compress(List<MessageDTO> messages) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (OutputStream gzip = new GZIPOutputStream(bytes)) {
+            objectMapper.writeValue(gzip, messages);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private List<MessageDTO> decompress(byte[] payload) {
+        try (InputStream gzip = new GZIPInputStream(new ByteArrayInputStream(payload))) {
+            return objectMapper.readValue(gzip, chunkType);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package com.pigeon.messenger.service.history;
+
+import com.pigeon.messenger.dto.MessageDTO;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Service;
+
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+// Keyset pages of one conversation across hot partitions, closed months and the archive. The open months
+// are read through the parent with a created_at lower bound, so Postgres prunes to them; closed months
+// are read one at a time in id order and skipped once they cannot reach into the page, using the id
+// ranges from MessagePartitionManager. The archive is read only when the page is short or its ids could
+// still interleave. Latest pages, the common case, touch only the current month.
+@Service
+public class MessageHistoryService {
+
+    private static final String COLUMNS = "id, conversation_id, sender_id, body, client_nonce, created_at, status";
+
+    // message_nonces.created_at is the message's own timestamp for new sends, the transaction start for
+    // rows written before that; either is well within a day of the message
+    private static final Duration NONCE_CLOCK_SLACK = Duration.ofDays(1);
+
+    private static final RowMapper<MessageDTO> MESSAGE_MAPPER = (rs, rowNum) -> new MessageDTO(
+            rs.getLong("id"),
+            rs.getLong("conversation_id"),
+            rs.getLong("sender_id"),
+            rs.getString("body"),
+            rs.getString("client_nonce"),
+            rs.getTimestamp("created_at").toLocalDateTime(),
+            rs.getString("status"));
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private MessagePartitionManager partitionManager;
+
+    @Autowired
+    private ColdMessageStore coldStore;
+
+    // Newest first; ids below beforeId, or the latest messages when beforeId is null
+    public List<MessageDTO> before(Long conversationId, Long beforeId, int limit) {
+        long bound = beforeId != null ? beforeId : Long.MAX_VALUE;
+        MessagePartitionManager.Catalog catalog = partitionManager.catalog();
+        if (catalog == null) {
+            return read(conversationId, "messages", null, null, bound, false, limit);
+        }
+
+        List<MessageDTO> page = read(conversationId, "messages", catalog.hotFrom(), null, bound, false, limit);
+        for (MessagePartitionManager.Segment segment : catalog.closed()) {
+            // closed is sorted by maxId descending, so once one segment cannot contribute none after it can
+            if (!MessageOrder.canImprove(page, segment.maxId(), false, limit)) {
+                break;
+            }
+            if (segment.minId() < bound) {
+                page = MessageOrder.merge(page, read(conversationId, segment, bound, false, limit), false, limit);
+            }
+        }
+        if (MessageOrder.canImprove(page, catalog.maxArchivedId(), false, limit)) {
+            page = MessageOrder.merge(page, coldStore.before(conversationId, bound, limit), false, limit);
+        }
+        return page;
+    }
+
+    // Oldest first; ids above afterId
+    public List<MessageDTO> after(Long conversationId, Long afterId, int limit) {
+        MessagePartitionManager.Catalog catalog = partitionManager.catalog();
+        if (catalog == null) {
+            return read(conversationId, "messages", null, null, afterId, true, limit);
+        }
+
+        List<MessageDTO> page = new ArrayList<>();
+        if (afterId < catalog.maxArchivedId()) {
+            page = coldStore.after(conversationId, afterId, limit);
+        }
+        List<MessagePartitionManager.Segment> closed = new ArrayList<>(catalog.closed());
+        closed.sort(Comparator.comparingLong(MessagePartitionManager.Segment::minId));
+        for (MessagePartitionManager.Segment segment : closed) {
+            if (!MessageOrder.canImprove(page, segment.minId(), true, limit)) {
+                break;
+            }
+            if (segment.maxId() > afterId) {
+                page = MessageOrder.merge(page, read(conversationId, segment, afterId, true, limit), true, limit);
+            }
+        }
+        return MessageOrder.merge(page,
+                read(conversationId, "messages", catalog.hotFrom(), null, afterId, true, limit), true, limit);
+    }
+
+    // Hot and closed months only, ordered by id; callers use it for recent messages, archived ids are skipped
+    public List<MessageDTO> findByIds(Collection<Long> messageIds) {
+        if (messageIds.isEmpty()) {
+            return List.of();
+        }
+        return jdbcTemplate.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement(
+                    "SELECT " + COLUMNS + " FROM messages WHERE id = ANY(?) ORDER BY id");
+            statement.setArray(1, connection.createArrayOf("bigint", messageIds.toArray()));
+            return statement;
+        }, MESSAGE_MAPPER);
+    }
+
+    // The message a sender already stored under clientNonce, or null. (sender_id, client_nonce) is only
+    // unique and indexed in message_nonces; the message is then read by id within a day of the nonce's
+    // created_at, so Postgres prunes to the partitions around it instead of probing every month.
+    // Nonces are pruned after pigeon.partitions.nonce-retention; a nonce reused after that is a new send.
+    public MessageDTO findByNonce(Long senderId, String clientNonce) {
+        List<Map<String, Object>> nonces = jdbcTemplate.queryForList(
+                "SELECT message_id, created_at FROM message_nonces WHERE sender_id = ? AND client_nonce = ?",
+                senderId, clientNonce);
+        if (nonces.isEmpty()) {
+            return null;
+        }
+        long messageId = ((Number) nonces.get(0).get("message_id")).longValue();
+        LocalDateTime createdAt = ((Timestamp) nonces.get(0).get("created_at")).toLocalDateTime();
+        List<MessageDTO> found = jdbcTemplate.query("SELECT " + COLUMNS + " FROM messages " +
+                        "WHERE id = ? AND created_at >= ? AND created_at < ?",
+                MESSAGE_MAPPER, messageId, Timestamp.valueOf(createdAt.minus(NONCE_CLOCK_SLACK)),
+                Timestamp.valueOf(createdAt.plus(NONCE_CLOCK_SLACK)));
+        return found.isEmpty() ? null : found.get(0);
+    }
+
+    // Inbox preview of a conversation whose last message has been archived; the inbox join finds nothing
+    public MessageDTO findArchived(Long conversationId, Long messageId) {
+        return coldStore.find(conversationId, messageId);
+    }
+
+    private List<MessageDTO> read(Long conversationId, MessagePartitionManager.Segment segment,
+                                  long bound, boolean ascending, int limit) {
+        return segment.isDefault()
+                ? read(conversationId, segment.table(), null, null, bound, ascending, limit)
+                // Through the parent with the month's bounds: a month archived meanwhile simply yields nothing
+                : read(conversationId, "messages", segment.from(), segment.to(), bound, ascending, limit);
+    }
+
+    private List<MessageDTO> read(Long conversationId, String table, LocalDateTime from,
+                                  LocalDateTime to, long bound, boolean ascending, int limit) {
+        StringBuilder sql = new StringBuilder("SELECT ").append(COLUMNS).append(" FROM ").append(table)
+                .append(" WHERE conversation_id = ? AND id ").append(ascending ? ">" : "<").append(" ?");
+        List<Object> args = new ArrayList<>(List.of(conversationId, bound));
+        if (from != null) {
+            sql.append(" AND created_at >= ?");
+            args.add(Timestamp.valueOf(from));
+        }
+        if (to != null) {
+            sql.append(" AND created_at < ?");
+            args.add(Timestamp.valueOf(to));
+        }
+        sql.append(" ORDER BY id ").append(ascending ? "ASC" : "DESC").append(" LIMIT ?");
+        args.add(limit);
+        return jdbcTemplate.query(sql.toString(), MESSAGE_MAPPER, args.toArray());
+    }
+}
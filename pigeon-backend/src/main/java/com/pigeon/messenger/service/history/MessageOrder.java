@@ -0,0 +1,50 @@
+package com.pigeon.messenger.service.history;
+
+import com.pigeon.messenger.dto.MessageDTO;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Merging of id-ordered message lists from different partitions and archive chunks. Ids are unique but
+// only roughly follow created_at (each node stamps created_at on its own clock), so sources can
+// interleave and must be merged.
+final class MessageOrder {
+
+    private MessageOrder() {
+    }
+
+    // Both inputs sorted in the given direction; the result is too, without duplicate ids, at most limit long
+    static List<MessageDTO> merge(List<MessageDTO> a, List<MessageDTO> b, boolean ascending, int limit) {
+        List<MessageDTO> merged = new ArrayList<>(Math.min(limit, a.size() + b.size()));
+        int i = 0;
+        int j = 0;
+        while (merged.size() < limit && (i < a.size() || j < b.size())) {
+            MessageDTO next;
+            if (j >= b.size()) {
+                next = a.get(i++);
+            } else if (i >= a.size()) {
+                next = b.get(j++);
+            } else {
+                long idA = a.get(i).getId();
+                long idB = b.get(j).getId();
+                if (idA == idB) {
+                    j++;
+                    continue;
+                }
+                next = (ascending ? idA < idB : idA > idB) ? a.get(i++) : b.get(j++);
+            }
+            merged.add(next);
+        }
+        return merged;
+    }
+
+    // Whether a source whose ids start at edge (its max for newest-first, its min for oldest-first) can
+    // still contribute to a page that already holds limit messages
+    static boolean canImprove(List<MessageDTO> page, long edge, boolean ascending, int limit) {
+        if (page.size() < limit) {
+            return true;
+        }
+        long last = page.get(limit - 1).getId();
+        return ascending ? edge < last : edge > last;
+    }
+}
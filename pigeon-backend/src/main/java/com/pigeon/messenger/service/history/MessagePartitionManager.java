@@ -0,0 +1,355 @@
+package com.pigeon.messenger.service.history;
+
+import com.pigeon.messenger.dto.MessageDTO;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// Owns the monthly partitions of messages (V13). Every check-interval it creates the partitions for the
+// coming months and for any month with rows in messages_default, archives months older than
+// archive.after-months into message_archive and drops them, and prunes message_nonces. Each step runs
+// under a transaction-scoped advisory lock, so with several nodes one does the work and the others skip it.
+// It also keeps the partition catalog MessageHistoryService plans reads with: the id range of every
+// closed month (computed once, a closed month no longer changes) and where the hot months start.
+@Service
+public class MessagePartitionManager {
+
+    private static final Logger log = LoggerFactory.getLogger(MessagePartitionManager.class);
+
+    private static final Pattern MONTH_PARTITION = Pattern.compile("messages_p(\\d{6})");
+    private static final DateTimeFormatter MONTH_SUFFIX = DateTimeFormatter.ofPattern("yyyyMM");
+    private static final String DEFAULT_PARTITION = "messages_default";
+    // pg advisory lock key for partition maintenance, shared by all nodes
+    private static final long MAINTENANCE_LOCK = 0x7069_6765_6f6e_0013L;
+
+    // A month counts as closed one day after it ends, so late clocks cannot add rows to it afterwards
+    private static final Duration CLOSE_GRACE = Duration.ofDays(1);
+
+    // One month of messages, or the default partition (from and to null), with its id range
+    public record Segment(String table, LocalDateTime from, LocalDateTime to, long minId, long maxId) {
+        public boolean isDefault() {
+            return from == null;
+        }
+    }
+
+    // Closed segments plus the start of the open months, which are read through the parent table
+    public record Catalog(List<Segment> closed, LocalDateTime hotFrom, long maxArchivedId) {
+    }
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ColdMessageStore coldStore;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${pigeon.partitions.months-ahead:3}")
+    private int monthsAhead;
+
+    @Value("${pigeon.partitions.check-interval:PT1H}")
+    private Duration checkInterval;
+
+    @Value("${pigeon.partitions.catalog-refresh-interval:PT5M}")
+    private Duration catalogRefreshInterval;
+
+    @Value("${pigeon.partitions.nonce-retention:P30D}")
+    private Duration nonceRetention;
+
+    @Value("${pigeon.archive.enabled:true}")
+    private boolean archiveEnabled;
+
+    @Value("${pigeon.archive.after-months:12}")
+    private int archiveAfterMonths;
+
+    @Value("${pigeon.archive.chunk-size:500}")
+    private int chunkSize;
+
+    // Id ranges of closed months by table name; never change once computed
+    private final Map<String, Segment> closedStats = new ConcurrentHashMap<>();
+
+    private volatile Catalog catalog;
+    private TransactionTemplate transactionTemplate;
+    private Thread maintainer;
+    private volatile boolean running;
+
+    @PostConstruct
+    public void start() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        try {
+            refreshCatalog();
+        } catch (RuntimeException e) {
+            log.warn("Message partition catalog unavailable at startup; history reads scan all partitions", e);
+        }
+        Gauge.builder("pigeon.partitions.closed", this, m -> m.catalog != null ? m.catalog.closed().size() : 0)
+                .register(meterRegistry);
+
+        running = true;
+        maintainer = new Thread(this::runMaintenanceLoop, "message-partitions");
+        maintainer.setDaemon(true);
+        maintainer.start();
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        maintainer.interrupt();
+        maintainer.join(1000);
+    }
+
+    // Null until the first refresh succeeded
+    public Catalog catalog() {
+        return catalog;
+    }
+
+    private void runMaintenanceLoop() {
+        long nextMaintenance = System.nanoTime();
+        while (running) {
+            try {
+                if (System.nanoTime() - nextMaintenance >= 0) {
+                    maintain();
+                    nextMaintenance = System.nanoTime() + checkInterval.toNanos();
+                }
+                refreshCatalog();
+                Thread.sleep(catalogRefreshInterval.toMillis());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e) {
+                log.error("Message partition maintenance failed; will retry", e);
+                try {
+                    Thread.sleep(catalogRefreshInterval.toMillis());
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    void maintain() {
+        LocalDate currentMonth = LocalDate.now().withDayOfMonth(1);
+        for (int i = 0; i <= monthsAhead; i++) {
+            createPartition(currentMonth.plusMonths(i));
+        }
+        // Months that had no partition when their rows were written, e.g. backfilled history
+        List<LocalDate> unpartitioned = jdbcTemplate.queryForList("SELECT DISTINCT "
+                + "CAST(date_trunc('month', created_at) AS date) FROM " + DEFAULT_PARTITION, LocalDate.class);
+        for (LocalDate month : unpartitioned) {
+            createPartition(month);
+        }
+
+        if (archiveEnabled) {
+            LocalDate archiveBefore = currentMonth.minusMonths(archiveAfterMonths);
+            List<LocalDate> months = listPartitions().stream()
+                    .map(MessagePartitionManager::monthOf)
+                    .filter(month -> month != null && month.isBefore(archiveBefore))
+                    .sorted()
+                    .toList();
+            for (LocalDate month : months) {
+                archivePartition(month);
+            }
+        }
+
+        int pruned = jdbcTemplate.update("DELETE FROM message_nonces WHERE created_at < ?",
+                Timestamp.valueOf(LocalDateTime.now().minus(nonceRetention)));
+        if (pruned > 0) {
+            log.info("Pruned {} send nonces older than {}", pruned, nonceRetention);
+        }
+    }
+
+    // Creates the partitions of every month from one through the other, for writers about to insert
+    // messages outside the months maintain() keeps ahead
+    public void ensurePartitions(LocalDate fromMonth, LocalDate toMonth) {
+        for (LocalDate month = fromMonth.withDayOfMonth(1); !month.isAfter(toMonth); month = month.plusMonths(1)) {
+            createPartition(month);
+        }
+        refreshCatalog();
+    }
+
+    private void createPartition(LocalDate month) {
+        String table = tableFor(month);
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                if (!tryLock() || exists(table)) {
+                    return;
+                }
+                // Postgres refuses the partition while messages_default holds rows of its month, so they are
+                // taken out first and put back through the parent with their ids and created_at unchanged
+                String monthRange = "created_at >= '" + month + "' AND created_at < '" + month.plusMonths(1) + "'";
+                // Writers lock messages before its partitions; so does this, and holds them off until the rows are back
+                jdbcTemplate.execute("LOCK TABLE messages IN SHARE ROW EXCLUSIVE MODE");
+                jdbcTemplate.execute("CREATE TEMPORARY TABLE moved_messages ON COMMIT DROP AS "
+                        + "SELECT id, conversation_id, sender_id, body, client_nonce, created_at, status "
+                        + "FROM " + DEFAULT_PARTITION + " WHERE " + monthRange);
+                jdbcTemplate.execute("DELETE FROM " + DEFAULT_PARTITION + " WHERE " + monthRange);
+                jdbcTemplate.execute("CREATE TABLE " + table + " PARTITION OF messages FOR VALUES FROM ('"
+                        + month + "') TO ('" + month.plusMonths(1) + "')");
+                int moved = jdbcTemplate.update("INSERT INTO messages "
+                        + "(id, conversation_id, sender_id, body, client_nonce, created_at, status) "
+                        + "SELECT id, conversation_id, sender_id, body, client_nonce, created_at, status "
+                        + "FROM moved_messages");
+                log.info("Created message partition {} ({} messages moved from {})", table, moved, DEFAULT_PARTITION);
+            });
+        } catch (RuntimeException e) {
+            log.warn("Could not create message partition {}", table, e);
+        }
+    }
+
+    // Moves one month into message_archive and drops its partition, atomically: readers see either the
+    // partition or the archive chunks, never neither
+    private void archivePartition(LocalDate month) {
+        String table = tableFor(month);
+        long started = System.currentTimeMillis();
+        Integer archived = transactionTemplate.execute(status -> {
+            if (!tryLock() || !exists(table)) {
+                return null;
+            }
+            ChunkWriter writer = new ChunkWriter(month);
+            JdbcTemplate streaming = new JdbcTemplate(jdbcTemplate.getDataSource());
+            streaming.setFetchSize(chunkSize);
+            streaming.query("SELECT id, conversation_id, sender_id, body, client_nonce, created_at, status FROM "
+                    + table + " ORDER BY conversation_id, id DESC", rs -> {
+                writer.add(new MessageDTO(rs.getLong("id"), rs.getLong("conversation_id"),
+                        rs.getLong("sender_id"), rs.getString("body"), rs.getString("client_nonce"),
+                        rs.getTimestamp("created_at").toLocalDateTime(), rs.getString("status")));
+            });
+            writer.flush();
+            jdbcTemplate.update("DELETE FROM flights WHERE message_id IN (SELECT id FROM " + table + ")");
+            jdbcTemplate.execute("DROP TABLE " + table);
+            return writer.messages;
+        });
+        if (archived != null) {
+            closedStats.remove(table);
+            log.info("Archived message partition {}: {} messages in {} ms",
+                    table, archived, System.currentTimeMillis() - started);
+        }
+    }
+
+    void refreshCatalog() {
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime hotFrom = null;
+        List<Segment> closed = new ArrayList<>();
+        List<String> tables = listPartitions();
+        closedStats.keySet().retainAll(tables);
+        for (String table : tables) {
+            if (DEFAULT_PARTITION.equals(table)) {
+                // Written to whenever a month has no partition, so its range is recomputed every time
+                addIfNotEmpty(closed, stats(table, null, null));
+                continue;
+            }
+            LocalDate month = monthOf(table);
+            if (month == null) {
+                continue;
+            }
+            LocalDateTime from = month.atStartOfDay();
+            LocalDateTime to = month.plusMonths(1).atStartOfDay();
+            if (to.plus(CLOSE_GRACE).isAfter(now)) {
+                if (hotFrom == null || from.isBefore(hotFrom)) {
+                    hotFrom = from;
+                }
+                continue;
+            }
+            addIfNotEmpty(closed, closedStats.computeIfAbsent(table, t -> stats(t, from, to)));
+        }
+        closed.sort(Comparator.comparingLong(Segment::maxId).reversed());
+        catalog = new Catalog(List.copyOf(closed),
+                hotFrom != null ? hotFrom : now.withDayOfMonth(1).toLocalDate().atStartOfDay(),
+                coldStore.maxArchivedId());
+    }
+
+    private Segment stats(String table, LocalDateTime from, LocalDateTime to) {
+        return jdbcTemplate.queryForObject("SELECT MIN(id), MAX(id) FROM " + table, (rs, rowNum) -> {
+            long min = rs.getLong(1);
+            return rs.wasNull() ? new Segment(table, from, to, 0, -1) : new Segment(table, from, to, min, rs.getLong(2));
+        });
+    }
+
+    private static void addIfNotEmpty(List<Segment> segments, Segment segment) {
+        if (segment.minId() <= segment.maxId()) {
+            segments.add(segment);
+        }
+    }
+
+    private List<String> listPartitions() {
+        return jdbcTemplate.queryForList("SELECT c.relname FROM pg_inherits i " +
+                "JOIN pg_class c ON c.oid = i.inhrelid WHERE i.inhparent = 'messages'::regclass", String.class);
+    }
+
+    private boolean exists(String table) {
+        return Boolean.TRUE.equals(jdbcTemplate.queryForObject("SELECT to_regclass(?) IS NOT NULL",
+                Boolean.class, table));
+    }
+
+    private boolean tryLock() {
+        return Boolean.TRUE.equals(jdbcTemplate.queryForObject("SELECT pg_try_advisory_xact_lock(?)",
+                Boolean.class, MAINTENANCE_LOCK));
+    }
+
+    private static String tableFor(LocalDate month) {
+        return "messages_p" + month.format(MONTH_SUFFIX);
+    }
+
+    private static LocalDate monthOf(String table) {
+        Matcher matcher = MONTH_PARTITION.matcher(table);
+        if (!matcher.matches()) {
+            return null;
+        }
+        String suffix = matcher.group(1);
+        return LocalDate.of(Integer.parseInt(suffix.substring(0, 4)), Integer.parseInt(suffix.substring(4)), 1);
+    }
+
+    // Cuts the (conversation_id, id DESC) stream of one month into chunks of at most chunk-size
+    private class ChunkWriter {
+        private final LocalDate month;
+        private final List<MessageDTO> chunk = new ArrayList<>();
+        private int messages;
+
+        private ChunkWriter(LocalDate month) {
+            this.month = month;
+        }
+
+        private void add(MessageDTO message) {
+            if (!chunk.isEmpty() && (chunk.size() >= chunkSize
+                    || !chunk.get(0).getConversationId().equals(message.getConversationId()))) {
+                flush();
+            }
+            chunk.add(message);
+            messages++;
+        }
+
+        private void flush() {
+            if (chunk.isEmpty()) {
+                return;
+            }
+            coldStore.append(chunk.get(0).getConversationId(), month, chunk);
+            chunk.clear();
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package com.pigeon.messenger.service.quota;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongToIntFunction;
+
+// Sends per user for the current quota day. Each user has one AtomicLong packing (day, count), so taking
+// a send is a single CAS: concurrent senders never lock, and different users never share a cell.
+// Cells from earlier days are retired by sweep; a sender that finds a retired cell starts a fresh one.
+public class DailySendCounter {
+
+    private static final long RETIRED = -1;
+
+    private final Map<Long, AtomicLong> cells = new ConcurrentHashMap<>();
+
+    // seed gives the user's sends already stored today; it is only asked when a user has no cell
+    public boolean tryIncrement(long userId, long day, int limit, LongToIntFunction seed) {
+        while (true) {
+            AtomicLong cell = cellFor(userId, day, seed);
+            long state = cell.get();
+            if (state == RETIRED) {
+                cells.remove(userId, cell);
+                continue;
+            }
+            // A sender that read the clock just before midnight may still carry yesterday
+            long cellDay = dayOf(state);
+            long effectiveDay = Math.max(cellDay, day);
+            int count = cellDay == effectiveDay ? countOf(state) : 0;
+            if (count >= limit) {
+                return false;
+            }
+            if (cell.compareAndSet(state, pack(effectiveDay, count + 1))) {
+                return true;
+            }
+        }
+    }
+
+    // Gives back a send taken on day, e.g. when storing the message failed
+    public void decrement(long userId, long day) {
+        AtomicLong cell = cells.get(userId);
+        if (cell == null) {
+            return;
+        }
+        while (true) {
+            long state = cell.get();
+            if (state == RETIRED || dayOf(state) != day || countOf(state) == 0) {
+                return;
+            }
+            if (cell.compareAndSet(state, pack(day, countOf(state) - 1))) {
+                return;
+            }
+        }
+    }
+
+    public int count(long userId, long day) {
+        AtomicLong cell = cells.get(userId);
+        long state = cell != null ? cell.get() : RETIRED;
+        return state != RETIRED && dayOf(state) == day ? countOf(state) : 0;
+    }
+
+    // Drops the cells of users who have not sent since before today
+    public void sweep(long today) {
+        cells.forEach((userId, cell) -> {
+            long state = cell.get();
+            if (state != RETIRED && dayOf(state) < today && cell.compareAndSet(state, RETIRED)) {
+                cells.remove(userId, cell);
+            }
+        });
+    }
+
+    public int size() {
+        return cells.size();
+    }
+
+    private AtomicLong cellFor(long userId, long day, LongToIntFunction seed) {
+        AtomicLong cell = cells.get(userId);
+        if (cell != null) {
+            return cell;
+        }
+        // Seeded outside the map so a slow count never blocks other users' bins
+        AtomicLong seeded = new AtomicLong(pack(day, seed.applyAsInt(userId)));
+        cell = cells.putIfAbsent(userId, seeded);
+        return cell != null ? cell : seeded;
+    }
+
+    private static long pack(long day, int count) {
+        return (day << 32) | (count & 0xFFFFFFFFL);
+    }
+
+    private static long dayOf(long state) {
+        return state >>> 32;
+    }
+
+    private static int countOf(long state) {
+        return (int) state;
+    }
+}
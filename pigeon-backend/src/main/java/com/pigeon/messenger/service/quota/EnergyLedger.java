@@ -0,0 +1,136 @@
+package com.pigeon.messenger.service.quota;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.UnaryOperator;
+
+// Energy spent and XP earned per pigeon that are not yet written to its row. Each pigeon's totals are one
+// immutable Entry swapped by CAS, so the energy check and the spend are atomic without a lock.
+// drain moves pending energy to inFlight while the flusher writes it; it keeps counting against the
+// pigeon until settle, after the row (and the cached party) carries it.
+public class EnergyLedger {
+
+    private static final Entry RETIRED = new Entry(0, 0, 0, 0, 0);
+
+    private final Map<Long, AtomicReference<Entry>> entries = new ConcurrentHashMap<>();
+
+    // Spends cost if baseEnergy (stored energy with recovery, as last written) still covers it
+    public boolean trySpend(long pigeonId, long userId, int baseEnergy, int cost, int xp, long now) {
+        while (true) {
+            AtomicReference<Entry> ref = entryFor(pigeonId, userId);
+            Entry entry = ref.get();
+            if (entry == RETIRED) {
+                entries.remove(pigeonId, ref);
+                continue;
+            }
+            if (baseEnergy - entry.spent - entry.inFlight < cost) {
+                return false;
+            }
+            if (ref.compareAndSet(entry, entry.add(cost, xp, now))) {
+                return true;
+            }
+        }
+    }
+
+    // Spends without checking, when the energy check was made elsewhere (the shared Redis ledger)
+    public void record(long pigeonId, long userId, int cost, int xp, long now) {
+        trySpend(pigeonId, userId, Integer.MAX_VALUE, cost, xp, now);
+    }
+
+    // Undoes a spend; pending may go negative if the spend was already drained, which the next flush gives back
+    public void refund(long pigeonId, long userId, int cost, int xp) {
+        while (true) {
+            AtomicReference<Entry> ref = entryFor(pigeonId, userId);
+            Entry entry = ref.get();
+            if (entry == RETIRED) {
+                entries.remove(pigeonId, ref);
+                continue;
+            }
+            if (ref.compareAndSet(entry, entry.add(-cost, -xp, entry.lastSentAt))) {
+                return;
+            }
+        }
+    }
+
+    public int pending(long pigeonId) {
+        AtomicReference<Entry> ref = entries.get(pigeonId);
+        Entry entry = ref != null ? ref.get() : RETIRED;
+        return entry.spent + entry.inFlight;
+    }
+
+    // Takes everything pending for the flusher; each Drained must later be settled or restored
+    public List<Drained> drain() {
+        List<Drained> drained = new ArrayList<>();
+        entries.forEach((pigeonId, ref) -> {
+            while (true) {
+                Entry entry = ref.get();
+                if (entry == RETIRED || (entry.spent == 0 && entry.xp == 0)) {
+                    return;
+                }
+                Entry next = new Entry(entry.userId, 0, entry.inFlight + entry.spent, 0, entry.lastSentAt);
+                if (ref.compareAndSet(entry, next)) {
+                    drained.add(new Drained(pigeonId, entry.userId, entry.spent, entry.xp, entry.lastSentAt));
+                    return;
+                }
+            }
+        });
+        return drained;
+    }
+
+    // The drained amounts are now on the pigeon row
+    public void settle(Drained drained) {
+        update(drained.pigeonId(), entry -> new Entry(entry.userId, entry.spent,
+                entry.inFlight - drained.energySpent(), entry.xp, entry.lastSentAt));
+    }
+
+    // Writing failed; put the drained amounts back for the next flush
+    public void restore(Drained drained) {
+        update(drained.pigeonId(), entry -> new Entry(entry.userId, entry.spent + drained.energySpent(),
+                entry.inFlight - drained.energySpent(), entry.xp + drained.xp(),
+                Math.max(entry.lastSentAt, drained.lastSentAt())));
+    }
+
+    // Drops pigeons with nothing pending that have not sent since before idleSince
+    public void sweep(long idleSince) {
+        entries.forEach((pigeonId, ref) -> {
+            Entry entry = ref.get();
+            if (entry != RETIRED && entry.spent == 0 && entry.inFlight == 0 && entry.xp == 0
+                    && entry.lastSentAt < idleSince && ref.compareAndSet(entry, RETIRED)) {
+                entries.remove(pigeonId, ref);
+            }
+        });
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    private void update(long pigeonId, UnaryOperator<Entry> change) {
+        AtomicReference<Entry> ref = entries.get(pigeonId);
+        if (ref != null) {
+            // Never retired while inFlight is non-zero, so the entry is still live here
+            ref.getAndUpdate(entry -> entry == RETIRED ? entry : change.apply(entry));
+        }
+    }
+
+    private AtomicReference<Entry> entryFor(long pigeonId, long userId) {
+        AtomicReference<Entry> ref = entries.get(pigeonId);
+        if (ref != null) {
+            return ref;
+        }
+        return entries.computeIfAbsent(pigeonId, id -> new AtomicReference<>(new Entry(userId, 0, 0, 0, 0)));
+    }
+
+    private record Entry(long userId, int spent, int inFlight, int xp, long lastSentAt) {
+
+        Entry add(int energy, int gainedXp, long sentAt) {
+            return new Entry(userId, spent + energy, inFlight, xp + gainedXp, Math.max(lastSentAt, sentAt));
+        }
+    }
+
+    public record Drained(long pigeonId, long userId, int energySpent, int xp, long lastSentAt) {
+    }
+}
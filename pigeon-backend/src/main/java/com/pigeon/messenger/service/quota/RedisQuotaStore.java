@@ -0,0 +1,104 @@
+package com.pigeon.messenger.service.quota;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+
+// Cluster-wide send quota: the daily count and the unwritten energy spend live in Redis, and a send is
+// checked and taken by one Lua script, so nodes never race each other and never hold a lock. Both keys
+// of a user share a hash tag so the script also runs on Redis Cluster.
+@Component
+@ConditionalOnProperty(name = "pigeon.quota.store", havingValue = "redis")
+public class RedisQuotaStore {
+
+    public static final long DAILY_LIMIT = -1;
+    public static final long NO_ENERGY = -2;
+    public static final long UNSEEDED = -3;
+
+    // KEYS: count, spent. ARGV: limit, base energy (-1 = no pigeon), cost, spent ttl seconds
+    private static final RedisScript<Long> ACQUIRE = new DefaultRedisScript<>("""
+            local sent = redis.call('GET', KEYS[1])
+            if not sent then return -3 end
+            sent = tonumber(sent)
+            if sent >= tonumber(ARGV[1]) then return -1 end
+            local base = tonumber(ARGV[2])
+            if base >= 0 then
+              local cost = tonumber(ARGV[3])
+              local spent = tonumber(redis.call('GET', KEYS[2]) or '0')
+              if base - spent < cost then return -2 end
+              redis.call('INCRBY', KEYS[2], cost)
+              redis.call('EXPIRE', KEYS[2], ARGV[4])
+            end
+            redis.call('INCR', KEYS[1])
+            return sent + 1
+            """, Long.class);
+
+    // KEYS: count, spent. ARGV: cost to give back (0 = no pigeon)
+    private static final RedisScript<Long> RELEASE = new DefaultRedisScript<>("""
+            local sent = tonumber(redis.call('GET', KEYS[1]) or '0')
+            if sent > 0 then redis.call('DECR', KEYS[1]) end
+            if tonumber(ARGV[1]) ~= 0 then redis.call('DECRBY', KEYS[2], ARGV[1]) end
+            return sent
+            """, Long.class);
+
+    // KEYS: spent. ARGV: amount now written to the pigeon row, spent ttl seconds
+    private static final RedisScript<Long> SETTLE = new DefaultRedisScript<>("""
+            local spent = redis.call('DECRBY', KEYS[1], ARGV[1])
+            if redis.call('TTL', KEYS[1]) == -1 then redis.call('EXPIRE', KEYS[1], ARGV[2]) end
+            return spent
+            """, Long.class);
+
+    @Autowired
+    private StringRedisTemplate redisTemplate;
+
+    @Value("${pigeon.quota.key-prefix:pigeon:quota:}")
+    private String keyPrefix;
+
+    // Bounds how long a spend survives a node that died before writing it to the pigeon row
+    @Value("${pigeon.quota.spent-ttl:PT1H}")
+    private Duration spentTtl;
+
+    // Count after the send, or DAILY_LIMIT, NO_ENERGY or UNSEEDED (seed the day, then retry)
+    public long acquire(long userId, long day, Long pigeonId, int limit, int baseEnergy, int cost) {
+        Long result = redisTemplate.execute(ACQUIRE, keys(userId, day, pigeonId),
+                String.valueOf(limit),
+                String.valueOf(pigeonId != null ? baseEnergy : -1),
+                String.valueOf(cost),
+                String.valueOf(spentTtl.toSeconds()));
+        return result != null ? result : UNSEEDED;
+    }
+
+    // First node to see the user today sets the count from the database; the others keep it
+    public void seed(long userId, long day, int count, Duration ttl) {
+        redisTemplate.opsForValue().setIfAbsent(countKey(userId, day), String.valueOf(count), ttl);
+    }
+
+    public void release(long userId, long day, Long pigeonId, int cost) {
+        redisTemplate.execute(RELEASE, keys(userId, day, pigeonId), String.valueOf(pigeonId != null ? cost : 0));
+    }
+
+    public void settle(long userId, long pigeonId, int energySpent) {
+        redisTemplate.execute(SETTLE, List.of(spentKey(userId, pigeonId)),
+                String.valueOf(energySpent), String.valueOf(spentTtl.toSeconds()));
+    }
+
+    private List<String> keys(long userId, long day, Long pigeonId) {
+        // The spent key is still passed without a pigeon so the script's key list is fixed
+        return List.of(countKey(userId, day), spentKey(userId, pigeonId != null ? pigeonId : 0));
+    }
+
+    private String countKey(long userId, long day) {
+        return keyPrefix + "{" + userId + "}:sent:" + day;
+    }
+
+    private String spentKey(long userId, long pigeonId) {
+        return keyPrefix + "{" + userId + "}:spent:" + pigeonId;
+    }
+}
@@ -0,0 +1,325 @@
+package com.pigeon.messenger.service.quota;
+
+import com.pigeon.messenger.dto.PigeonSnapshot;
+import com.pigeon.messenger.dto.UserDTO;
+import com.pigeon.messenger.repository.MessageRepository;
+import com.pigeon.messenger.repository.PigeonRepository;
+import com.pigeon.messenger.service.PigeonVitalsCalculator;
+import com.pigeon.messenger.service.cache.ProfileCache;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+// The spec's send rules, enforced on the server: a daily send limit per user, an energy cost and an XP
+// gain per send for the active pigeon. A send is checked against lock-free in-memory counters, or one
+// Redis script with pigeon.quota.store=redis, so it never takes a row lock. The energy and XP are written
+// onto the pigeon rows in the background every flush-interval.
+@Service
+public class SendQuotaService {
+
+    private static final Logger log = LoggerFactory.getLogger(SendQuotaService.class);
+
+    // Same curve as addXP in pigeon-state.js
+    public static final int XP_PER_LEVEL = 100;
+
+    public enum Decision { ALLOWED, DAILY_LIMIT, NO_ENERGY }
+
+    @Autowired
+    private ProfileCache profileCache;
+
+    @Autowired
+    private PigeonVitalsCalculator vitalsCalculator;
+
+    @Autowired
+    private PigeonRepository pigeonRepository;
+
+    @Autowired
+    private MessageRepository messageRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired(required = false)
+    private RedisQuotaStore redisStore;
+
+    @Value("${pigeon.quota.enabled:true}")
+    private boolean enabled;
+
+    @Value("${pigeon.quota.daily-sends:3}")
+    private int dailySends;
+
+    @Value("${pigeon.quota.energy-cost:15}")
+    private int energyCost;
+
+    @Value("${pigeon.quota.xp-per-send:10}")
+    private int xpPerSend;
+
+    @Value("${pigeon.quota.zone:UTC}")
+    private ZoneId zone;
+
+    @Value("${pigeon.quota.flush-interval:PT1S}")
+    private Duration flushInterval;
+
+    @Value("${pigeon.quota.sweep-interval:PT10M}")
+    private Duration sweepInterval;
+
+    private final DailySendCounter sendCounter = new DailySendCounter();
+    private final EnergyLedger energyLedger = new EnergyLedger();
+
+    private TransactionTemplate transactionTemplate;
+    private Thread flusher;
+    private volatile boolean running;
+
+    private final Map<Decision, Counter> decisions = new EnumMap<>(Decision.class);
+    private Counter redisErrors;
+    private Timer flushTimer;
+
+    @PostConstruct
+    public void start() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        for (Decision decision : Decision.values()) {
+            decisions.put(decision, Counter.builder("pigeon.quota.decision")
+                    .tag("decision", decision.name().toLowerCase().replace('_', '-'))
+                    .register(meterRegistry));
+        }
+        redisErrors = Counter.builder("pigeon.quota.redis.errors")
+                .description("Quota checks that fell back to this node's counters")
+                .register(meterRegistry);
+        flushTimer = Timer.builder("pigeon.quota.flush")
+                .description("Writing pending energy and XP onto pigeon rows")
+                .register(meterRegistry);
+        Gauge.builder("pigeon.quota.tracked", sendCounter, DailySendCounter::size)
+                .tag("ledger", "senders").register(meterRegistry);
+        Gauge.builder("pigeon.quota.tracked", energyLedger, EnergyLedger::size)
+                .tag("ledger", "pigeons").register(meterRegistry);
+
+        running = true;
+        flusher = new Thread(this::runFlushLoop, "send-quota-flush");
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        flusher.interrupt();
+        flusher.join(flushInterval.toMillis());
+        // Whatever is still pending would otherwise be lost with the process
+        flush();
+    }
+
+    // Takes one send from the user's allowance; release it if the send does not go through
+    public Permit tryAcquire(Long userId) {
+        if (!enabled) {
+            return Permit.UNLIMITED;
+        }
+        LocalDateTime now = LocalDateTime.now();
+        long day = LocalDate.now(zone).toEpochDay();
+        PigeonSnapshot pigeon = activePigeon(userId);
+
+        Permit permit = redisStore != null
+                ? acquireShared(userId, day, pigeon, now)
+                : acquireLocal(userId, day, pigeon, now);
+        decisions.get(permit.decision()).increment();
+        return permit;
+    }
+
+    public void release(Permit permit) {
+        if (!permit.granted() || permit == Permit.UNLIMITED) {
+            return;
+        }
+        if (permit.shared()) {
+            try {
+                redisStore.release(permit.userId(), permit.day(), permit.pigeonId(), energyCost);
+            } catch (RuntimeException e) {
+                redisErrors.increment();
+                log.warn("Could not give back send quota for user {}", permit.userId(), e);
+            }
+        } else {
+            sendCounter.decrement(permit.userId(), permit.day());
+        }
+        if (permit.pigeonId() != null) {
+            energyLedger.refund(permit.pigeonId(), permit.userId(), energyCost, xpPerSend);
+        }
+    }
+
+    // Value for the Retry-After header of a refused send
+    public Duration retryAfter(Permit permit) {
+        if (permit.decision() == Decision.DAILY_LIMIT) {
+            ZonedDateTime now = ZonedDateTime.now(zone);
+            return Duration.between(now, now.toLocalDate().plusDays(1).atStartOfDay(zone));
+        }
+        return vitalsCalculator.timeToRecover(energyCost);
+    }
+
+    private Permit acquireLocal(Long userId, long day, PigeonSnapshot pigeon, LocalDateTime now) {
+        if (!sendCounter.tryIncrement(userId, day, dailySends, id -> sentOn(id, day))) {
+            return Permit.denied(Decision.DAILY_LIMIT);
+        }
+        if (pigeon != null && !energyLedger.trySpend(pigeon.id(), userId,
+                vitalsCalculator.energyAt(pigeon, now), energyCost, xpPerSend, System.currentTimeMillis())) {
+            sendCounter.decrement(userId, day);
+            return Permit.denied(Decision.NO_ENERGY);
+        }
+        return new Permit(Decision.ALLOWED, userId, day, pigeon != null ? pigeon.id() : null, false);
+    }
+
+    private Permit acquireShared(Long userId, long day, PigeonSnapshot pigeon, LocalDateTime now) {
+        Long pigeonId = pigeon != null ? pigeon.id() : null;
+        int baseEnergy = pigeon != null ? vitalsCalculator.energyAt(pigeon, now) : 0;
+        long result;
+        try {
+            result = redisStore.acquire(userId, day, pigeonId, dailySends, baseEnergy, energyCost);
+            if (result == RedisQuotaStore.UNSEEDED) {
+                // First send of the day anywhere in the cluster; the key outlives the day by an hour for late sends
+                Duration ttl = Duration.between(ZonedDateTime.now(zone),
+                        LocalDate.ofEpochDay(day).plusDays(1).atStartOfDay(zone)).plusHours(1);
+                redisStore.seed(userId, day, sentOn(userId, day), ttl);
+                result = redisStore.acquire(userId, day, pigeonId, dailySends, baseEnergy, energyCost);
+            }
+        } catch (RuntimeException e) {
+            // Same degradation as the profile cache: a Redis outage falls back to this node's view
+            redisErrors.increment();
+            log.warn("Redis quota check failed for user {}; using local counters", userId, e);
+            return acquireLocal(userId, day, pigeon, now);
+        }
+
+        if (result == RedisQuotaStore.DAILY_LIMIT) {
+            return Permit.denied(Decision.DAILY_LIMIT);
+        }
+        if (result == RedisQuotaStore.NO_ENERGY) {
+            return Permit.denied(Decision.NO_ENERGY);
+        }
+        if (pigeonId != null) {
+            energyLedger.record(pigeonId, userId, energyCost, xpPerSend, System.currentTimeMillis());
+        }
+        return new Permit(Decision.ALLOWED, userId, day, pigeonId, true);
+    }
+
+    // The user's active pigeon from the profile cache; null if none, in which case only the daily limit applies
+    private PigeonSnapshot activePigeon(Long userId) {
+        UserDTO user = profileCache.getUser(userId);
+        if (user == null || user.getActivePigeonId() == null) {
+            return null;
+        }
+        for (PigeonSnapshot pigeon : profileCache.getParty(userId)) {
+            if (pigeon.id().equals(user.getActivePigeonId())) {
+                return pigeon;
+            }
+        }
+        return null;
+    }
+
+    // Sends already stored on the given quota day; asked once per user per day when no counter exists yet
+    private int sentOn(long userId, long day) {
+        LocalDateTime since = LocalDate.ofEpochDay(day).atStartOfDay(zone)
+                .withZoneSameInstant(ZoneId.systemDefault())
+                .toLocalDateTime();
+        return (int) messageRepository.countBySenderIdAndCreatedAtGreaterThanEqual(userId, since);
+    }
+
+    private void runFlushLoop() {
+        long nextSweep = System.nanoTime() + sweepInterval.toNanos();
+        while (running) {
+            try {
+                Thread.sleep(flushInterval.toMillis());
+                flush();
+                if (System.nanoTime() - nextSweep >= 0) {
+                    sendCounter.sweep(LocalDate.now(zone).toEpochDay());
+                    energyLedger.sweep(System.currentTimeMillis() - sweepInterval.toMillis());
+                    nextSweep = System.nanoTime() + sweepInterval.toNanos();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e) {
+                log.error("Send quota flush failed; will retry", e);
+            }
+        }
+    }
+
+    private void flush() {
+        List<EnergyLedger.Drained> drained = energyLedger.drain();
+        if (drained.isEmpty()) {
+            return;
+        }
+
+        List<EnergyLedger.Drained> written = flushTimer.record(() -> write(drained));
+
+        // Cached parties carry the stored vitals; drop them before the in-flight spend stops counting,
+        // so a check in between sees the spend twice rather than not at all
+        written.stream().map(EnergyLedger.Drained::userId).distinct().forEach(profileCache::evictParty);
+        for (EnergyLedger.Drained entry : written) {
+            energyLedger.settle(entry);
+            if (redisStore != null && entry.energySpent() != 0) {
+                try {
+                    redisStore.settle(entry.userId(), entry.pigeonId(), entry.energySpent());
+                } catch (RuntimeException e) {
+                    redisErrors.increment();
+                    log.warn("Could not settle energy of pigeon {} in Redis", entry.pigeonId(), e);
+                }
+            }
+        }
+    }
+
+    // One relative update per pigeon, so a feed committed since the pigeon was read is kept. Each runs in
+    // its own transaction: a pigeon whose row can't be written goes back to the ledger for the next flush
+    // without holding back the others.
+    private List<EnergyLedger.Drained> write(List<EnergyLedger.Drained> drained) {
+        LocalDateTime now = LocalDateTime.now();
+        List<EnergyLedger.Drained> written = new ArrayList<>(drained.size());
+        for (EnergyLedger.Drained entry : drained) {
+            LocalDateTime sentAt = entry.lastSentAt() > 0
+                    ? LocalDateTime.ofInstant(Instant.ofEpochMilli(entry.lastSentAt()), ZoneId.systemDefault())
+                    : null;
+            try {
+                transactionTemplate.executeWithoutResult(status -> pigeonRepository.applySends(entry.pigeonId(),
+                        entry.energySpent(), entry.xp(), XP_PER_LEVEL, sentAt, now,
+                        vitalsCalculator.energyRegenPerHour()));
+                written.add(entry);
+            } catch (RuntimeException e) {
+                energyLedger.restore(entry);
+                log.warn("Could not write vitals of pigeon {}; will retry", entry.pigeonId(), e);
+            }
+        }
+        return written;
+    }
+
+    // One send taken from a user's allowance; shared when it was taken from the Redis counters
+    public record Permit(Decision decision, long userId, long day, Long pigeonId, boolean shared) {
+
+        static final Permit UNLIMITED = new Permit(Decision.ALLOWED, 0, 0, null, false);
+
+        static Permit denied(Decision decision) {
+            return new Permit(decision, 0, 0, null, false);
+        }
+
+        public boolean granted() {
+            return decision == Decision.ALLOWED;
+        }
+    }
+}
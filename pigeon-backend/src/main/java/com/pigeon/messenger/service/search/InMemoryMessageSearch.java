@@ -0,0 +1,160 @@
+package com.pigeon.messenger.service.search;
+
+import com.pigeon.messenger.dto.MessageDTO;
+import com.pigeon.messenger.dto.SearchHitDTO;
+import com.pigeon.messenger.dto.SearchPageDTO;
+import com.pigeon.messenger.repository.ConversationRepository;
+import com.pigeon.messenger.repository.MessageRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+// In-process inverted index for single-node deployments (pigeon.search.mode=memory): no tsvector work
+// on insert and no search load on Postgres, at the cost of holding postings for every message in the
+// heap. Built from the messages table in the background once the application is ready; the ingestion
+// pipeline adds new messages as they commit. Only ids are indexed, hits are loaded by primary key.
+// Matching is plain lower-cased words (no stemming), so results differ slightly from postgres mode.
+@Component
+@ConditionalOnProperty(name = "pigeon.search.mode", havingValue = "memory")
+public class InMemoryMessageSearch implements MessageSearch {
+
+    private static final Logger log = LoggerFactory.getLogger(InMemoryMessageSearch.class);
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private MessageRepository messageRepository;
+
+    @Autowired
+    private ConversationRepository conversationRepository;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${pigeon.search.build-batch-size:10000}")
+    private int buildBatchSize;
+
+    private final InvertedIndex index = new InvertedIndex();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private volatile boolean ready;
+
+    // After CommandLineRunners, so data loaded at startup (demo, loadgen) is picked up
+    @EventListener(ApplicationReadyEvent.class)
+    public void build() {
+        Gauge.builder("pigeon.search.index.size", this, search -> search.size())
+                .description("Messages in the in-process search index")
+                .register(meterRegistry);
+        Thread builder = new Thread(this::buildFromDatabase, "search-index-build");
+        builder.setDaemon(true);
+        builder.start();
+    }
+
+    // False while the initial build runs; searches then only see what has been indexed so far
+    public boolean isReady() {
+        return ready;
+    }
+
+    @Override
+    public List<SearchHitDTO> search(Long userId, String query, SearchPageDTO.Cursor after, int limit) {
+        Set<Long> conversationIds = new HashSet<>(conversationRepository.findIdsByUserId(userId));
+        if (conversationIds.isEmpty()) {
+            return List.of();
+        }
+
+        List<InvertedIndex.Hit> hits;
+        lock.readLock().lock();
+        try {
+            hits = index.search(query, conversationIds::contains,
+                    after != null ? after.rank() : null, after != null ? after.messageId() : 0, limit);
+        } finally {
+            lock.readLock().unlock();
+        }
+        if (hits.isEmpty()) {
+            return List.of();
+        }
+
+        Map<Long, MessageDTO> messages = messageRepository.findAllById(
+                        hits.stream().map(InvertedIndex.Hit::messageId).collect(Collectors.toList()))
+                .stream()
+                .map(MessageDTO::fromEntity)
+                .collect(Collectors.toMap(MessageDTO::getId, Function.identity()));
+        List<SearchHitDTO> results = new ArrayList<>(hits.size());
+        for (InvertedIndex.Hit hit : hits) {
+            MessageDTO message = messages.get(hit.messageId());
+            if (message != null) {
+                results.add(new SearchHitDTO(message, hit.score()));
+            }
+        }
+        return results;
+    }
+
+    @Override
+    public void indexAll(List<MessageDTO> messages) {
+        lock.writeLock().lock();
+        try {
+            for (MessageDTO message : messages) {
+                index.add(message.getId(), message.getConversationId(), message.getBody());
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private int size() {
+        lock.readLock().lock();
+        try {
+            return index.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Keyset scan by id; messages the pipeline indexes meanwhile are skipped as duplicates
+    private void buildFromDatabase() {
+        long started = System.currentTimeMillis();
+        long lastId = 0;
+        try {
+            while (true) {
+                List<Object[]> rows = jdbcTemplate.query(
+                        "SELECT id, conversation_id, body FROM messages WHERE id > ? ORDER BY id LIMIT ?",
+                        (rs, rowNum) -> new Object[]{rs.getLong(1), rs.getLong(2), rs.getString(3)},
+                        lastId, buildBatchSize);
+                if (rows.isEmpty()) {
+                    break;
+                }
+                lock.writeLock().lock();
+                try {
+                    for (Object[] row : rows) {
+                        index.add((Long) row[0], (Long) row[1], (String) row[2]);
+                    }
+                } finally {
+                    lock.writeLock().unlock();
+                }
+                lastId = (Long) rows.get(rows.size() - 1)[0];
+            }
+            ready = true;
+            log.info("Search index built: {} messages in {} ms", size(), System.currentTimeMillis() - started);
+        } catch (RuntimeException e) {
+            log.error("Search index build failed after message {}; search results will be incomplete", lastId, e);
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package com.pigeon.messenger.service.search;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.function.LongPredicate;
+
+// Term -> postings over primitive arrays, plus message -> conversation for the access filter. Ids arrive
+// almost in order, so adding is normally an append; a late id is inserted in place. Not thread-safe:
+// InMemoryMessageSearch guards it with a read/write lock.
+class InvertedIndex {
+
+    private static final Set<String> STOP_WORDS = Set.of(
+            "a", "an", "and", "are", "as", "at", "be", "but", "by", "for", "if", "in", "into", "is", "it",
+            "no", "not", "of", "on", "or", "so", "such", "that", "the", "their", "then", "there", "these",
+            "they", "this", "to", "was", "will", "with");
+
+    private final Map<String, Postings> postings = new HashMap<>();
+    private final Postings conversations = new Postings();
+
+    // Query terms are every word of the query, all required; punctuation and stop words are ignored
+    static Map<String, Integer> terms(String text) {
+        Map<String, Integer> terms = new LinkedHashMap<>();
+        for (String token : text.toLowerCase(Locale.ROOT).split("[^\\p{L}\\p{N}]+")) {
+            if (token.length() > 1 && !STOP_WORDS.contains(token)) {
+                terms.merge(token, 1, Integer::sum);
+            }
+        }
+        return terms;
+    }
+
+    void add(long messageId, long conversationId, String body) {
+        if (!conversations.put(messageId, conversationId)) {
+            return;
+        }
+        terms(body).forEach((term, frequency) ->
+                postings.computeIfAbsent(term, t -> new Postings()).put(messageId, frequency));
+    }
+
+    int size() {
+        return conversations.size;
+    }
+
+    // Top hits ordered by (score DESC, id DESC) strictly after the cursor (afterScore, afterId)
+    List<Hit> search(String query, LongPredicate conversationFilter, Float afterScore, long afterId, int limit) {
+        Map<String, Integer> queryTerms = terms(query);
+        if (queryTerms.isEmpty()) {
+            return List.of();
+        }
+        List<Postings> lists = new ArrayList<>(queryTerms.size());
+        for (String term : queryTerms.keySet()) {
+            Postings list = postings.get(term);
+            if (list == null) {
+                return List.of();
+            }
+            lists.add(list);
+        }
+        // Drive from the rarest term and probe the others; scores are summed in query order so a
+        // message scores exactly the same on every page
+        Postings driver = lists.stream().min(Comparator.comparingInt(list -> list.size)).orElseThrow();
+
+        PriorityQueue<Hit> top = new PriorityQueue<>(limit + 1, Hit.BEST_FIRST.reversed());
+        for (int i = 0; i < driver.size; i++) {
+            long messageId = driver.ids[i];
+            float score = 0;
+            boolean matchesAll = true;
+            for (int l = 0; l < lists.size() && matchesAll; l++) {
+                Postings list = lists.get(l);
+                int index = list == driver ? i : list.indexOf(messageId);
+                if (index < 0) {
+                    matchesAll = false;
+                } else {
+                    score += saturate(list.values[index]);
+                }
+            }
+            if (!matchesAll) {
+                continue;
+            }
+            if (afterScore != null && (score > afterScore || (score == afterScore && messageId >= afterId))) {
+                continue;
+            }
+            int conversationIndex = conversations.indexOf(messageId);
+            if (conversationIndex < 0 || !conversationFilter.test(conversations.values[conversationIndex])) {
+                continue;
+            }
+            top.add(new Hit(messageId, score));
+            if (top.size() > limit) {
+                top.poll();
+            }
+        }
+
+        List<Hit> hits = new ArrayList<>(top);
+        hits.sort(Hit.BEST_FIRST);
+        return hits;
+    }
+
+    // Term frequency with diminishing returns, and no corpus statistics so a message's score never
+    // changes as the index grows and cursors stay valid
+    private static float saturate(long frequency) {
+        return frequency / (frequency + 1.0f);
+    }
+
+    record Hit(long messageId, float score) {
+        static final Comparator<Hit> BEST_FIRST = Comparator.comparingDouble((Hit hit) -> hit.score).reversed()
+                .thenComparing(Comparator.comparingLong((Hit hit) -> hit.messageId).reversed());
+    }
+
+    // Sorted message ids with one value each (a term frequency, or a conversation id)
+    private static class Postings {
+        private long[] ids = new long[4];
+        private long[] values = new long[4];
+        private int size;
+
+        // False if the id is already present
+        boolean put(long id, long value) {
+            int index = size == 0 || id > ids[size - 1] ? -(size + 1) : Arrays.binarySearch(ids, 0, size, id);
+            if (index >= 0) {
+                return false;
+            }
+            index = -(index + 1);
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+                values = Arrays.copyOf(values, size * 2);
+            }
+            System.arraycopy(ids, index, ids, index + 1, size - index);
+            System.arraycopy(values, index, values, index + 1, size - index);
+            ids[index] = id;
+            values[index] = value;
+            size++;
+            return true;
+        }
+
+        int indexOf(long id) {
+            int index = Arrays.binarySearch(ids, 0, size, id);
+            return index >= 0 ? index : -1;
+        }
+    }
+}
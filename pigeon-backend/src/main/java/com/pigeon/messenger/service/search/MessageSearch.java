@@ -0,0 +1,19 @@
+package com.pigeon.messenger.service.search;
+
+import com.pigeon.messenger.dto.MessageDTO;
+import com.pigeon.messenger.dto.SearchHitDTO;
+import com.pigeon.messenger.dto.SearchPageDTO;
+
+import java.util.List;
+
+// Ranked full-text search over the messages of one user's conversations, best match first and ties
+// newest first, so (rank, id) is a keyset cursor
+public interface MessageSearch {
+
+    // Up to limit hits ranked after the cursor; a null cursor starts from the best match
+    List<SearchHitDTO> search(Long userId, String query, SearchPageDTO.Cursor after, int limit);
+
+    // Messages just committed by the ingestion pipeline; only an in-process index needs to see them
+    default void indexAll(List<MessageDTO> messages) {
+    }
+}
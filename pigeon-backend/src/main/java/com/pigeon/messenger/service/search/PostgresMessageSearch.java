@@ -0,0 +1,72 @@
+package com.pigeon.messenger.service.search;
+
+import com.pigeon.messenger.dto.MessageDTO;
+import com.pigeon.messenger.dto.SearchHitDTO;
+import com.pigeon.messenger.dto.SearchPageDTO;
+import com.pigeon.messenger.repository.ConversationRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.util.List;
+
+// Search through messages.search_vector and its GIN index (V12). Passing the caller's conversation ids
+// lets the planner choose: for a user with few conversations it walks idx_messages_conversation_id and
+// filters on the vector, otherwise it starts from the GIN index. Ranked by ts_rank_cd, which uses no
+// corpus statistics, so a row's rank is stable and the (rank, id) keyset holds across pages.
+@Component
+@ConditionalOnProperty(name = "pigeon.search.mode", havingValue = "postgres", matchIfMissing = true)
+public class PostgresMessageSearch implements MessageSearch {
+
+    private static final String SEARCH =
+            "SELECT m.id, m.conversation_id, m.sender_id, m.body, m.client_nonce, m.created_at, m.status, " +
+            "ts_rank_cd(m.search_vector, q) AS rank " +
+            "FROM messages m, websearch_to_tsquery('english', ?) q " +
+            "WHERE m.conversation_id = ANY(?) AND m.search_vector @@ q ";
+
+    private static final String AFTER = "AND (ts_rank_cd(m.search_vector, q), m.id) < (?, ?) ";
+
+    private static final String ORDER = "ORDER BY rank DESC, m.id DESC LIMIT ?";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ConversationRepository conversationRepository;
+
+    @Override
+    public List<SearchHitDTO> search(Long userId, String query, SearchPageDTO.Cursor after, int limit) {
+        List<Long> conversationIds = conversationRepository.findIdsByUserId(userId);
+        if (conversationIds.isEmpty()) {
+            return List.of();
+        }
+
+        String sql = SEARCH + (after != null ? AFTER : "") + ORDER;
+        return jdbcTemplate.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement(sql);
+            int i = 1;
+            statement.setString(i++, query);
+            statement.setArray(i++, connection.createArrayOf("bigint", conversationIds.toArray()));
+            if (after != null) {
+                statement.setFloat(i++, after.rank());
+                statement.setLong(i++, after.messageId());
+            }
+            statement.setInt(i, limit);
+            return statement;
+        }, (rs, rowNum) -> {
+            Timestamp createdAt = rs.getTimestamp("created_at");
+            MessageDTO message = new MessageDTO(
+                    rs.getLong("id"),
+                    rs.getLong("conversation_id"),
+                    rs.getLong("sender_id"),
+                    rs.getString("body"),
+                    rs.getString("client_nonce"),
+                    createdAt != null ? createdAt.toLocalDateTime() : null,
+                    rs.getString("status"));
+            return new SearchHitDTO(message, rs.getFloat("rank"));
+        });
+    }
+}
@@ -0,0 +1,90 @@
+package com.pigeon.messenger.service.sync;
+
+import com.pigeon.messenger.dto.ConversationDTO;
+import com.pigeon.messenger.dto.MessageDTO;
+import com.pigeon.messenger.dto.ReceiptDTO;
+import com.pigeon.messenger.dto.SyncDTO;
+import com.pigeon.messenger.repository.ConversationReadStateRepository;
+import com.pigeon.messenger.repository.ConversationRepository;
+import com.pigeon.messenger.service.ReceiptService;
+import com.pigeon.messenger.service.history.MessageHistoryService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+// Delta sync for reconnecting clients: everything that changed for a user since a cursor, collapsed to
+// one entry per conversation and receipt watermark. A page of the change log costs a handful of indexed
+// reads regardless of how many conversations the user has.
+@Service
+public class SyncService {
+
+    @Autowired
+    private UserChangeLog changeLog;
+
+    @Autowired
+    private MessageHistoryService historyService;
+
+    @Autowired
+    private ConversationRepository conversationRepository;
+
+    @Autowired
+    private ConversationReadStateRepository readStateRepository;
+
+    @Autowired
+    private ReceiptService receiptService;
+
+    public SyncDTO sync(Long userId, Long since, int limit) {
+        long lastSeq = changeLog.lastSeq(userId);
+        if (since == null || since > lastSeq) {
+            return reset(lastSeq);
+        }
+        List<UserChangeLog.Entry> entries = since == lastSeq ? List.of() : changeLog.read(userId, since, limit);
+        // seq is dense per user, so anything but since + 1 first means the entries after since were pruned
+        if (since < lastSeq && (entries.isEmpty() || entries.get(0).seq() != since + 1)) {
+            return reset(lastSeq);
+        }
+        if (entries.isEmpty()) {
+            return new SyncDTO(List.of(), List.of(), List.of(), SyncDTO.encodeCursor(since), false, false);
+        }
+
+        Set<Long> conversationIds = new LinkedHashSet<>();
+        Set<Long> receiptConversationIds = new LinkedHashSet<>();
+        List<Long> messageIds = new ArrayList<>();
+        for (UserChangeLog.Entry entry : entries) {
+            conversationIds.add(entry.conversationId());
+            if (entry.kind() == UserChangeLog.Kind.MESSAGE && entry.messageId() != null) {
+                messageIds.add(entry.messageId());
+            } else if (entry.kind() == UserChangeLog.Kind.RECEIPT) {
+                receiptConversationIds.add(entry.conversationId());
+            }
+        }
+
+        List<MessageDTO> messages = historyService.findByIds(messageIds);
+        Map<Long, List<MessageDTO>> byConversation = messages.stream()
+                .collect(Collectors.groupingBy(MessageDTO::getConversationId));
+        byConversation.forEach(receiptService::applyReceipts);
+
+        List<ReceiptDTO> receipts = receiptConversationIds.isEmpty() ? List.of()
+                : readStateRepository.findByConversationIdIn(receiptConversationIds).stream()
+                        .map(ReceiptDTO::fromEntity)
+                        .collect(Collectors.toList());
+
+        List<ConversationDTO> conversations = conversationRepository
+                .findInboxByUserIdAndConversationIds(userId, conversationIds).stream()
+                .map(ConversationDTO::fromInboxRow)
+                .collect(Collectors.toList());
+
+        long cursor = entries.get(entries.size() - 1).seq();
+        return new SyncDTO(conversations, messages, receipts, SyncDTO.encodeCursor(cursor), cursor < lastSeq, false);
+    }
+
+    private static SyncDTO reset(long lastSeq) {
+        return new SyncDTO(List.of(), List.of(), List.of(), SyncDTO.encodeCursor(lastSeq), false, true);
+    }
+}
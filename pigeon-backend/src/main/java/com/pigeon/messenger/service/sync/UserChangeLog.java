@@ -0,0 +1,140 @@
+package com.pigeon.messenger.service.sync;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+// Per-user change log (V14). Writers record changes inside the transaction that makes them; the seq
+// ranges of all users touched are allocated in one statement, in user id order, so concurrent writers
+// queue per user instead of deadlocking and each user's changes commit in seq order. Entries only
+// reference what changed; SyncService reads the current state.
+@Service
+public class UserChangeLog {
+
+    private static final Logger log = LoggerFactory.getLogger(UserChangeLog.class);
+
+    public enum Kind { MESSAGE, RECEIPT, CONVERSATION }
+
+    public record Change(long userId, Kind kind, long conversationId, Long messageId) {
+    }
+
+    public record Entry(long seq, Kind kind, long conversationId, Long messageId) {
+    }
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Value("${pigeon.sync.retention:P7D}")
+    private Duration retention;
+
+    @Value("${pigeon.sync.prune-interval:PT1H}")
+    private Duration pruneInterval;
+
+    private Thread pruner;
+    private volatile boolean running;
+
+    @PostConstruct
+    public void start() {
+        running = true;
+        pruner = new Thread(this::runPruneLoop, "user-changes-prune");
+        pruner.setDaemon(true);
+        pruner.start();
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        pruner.interrupt();
+        pruner.join(1000);
+    }
+
+    // Joins the caller's transaction, so the entries commit or roll back with the change itself
+    @Transactional
+    public void record(List<Change> changes) {
+        if (changes.isEmpty()) {
+            return;
+        }
+        Map<Long, List<Change>> byUser = new TreeMap<>();
+        for (Change change : changes) {
+            byUser.computeIfAbsent(change.userId(), id -> new ArrayList<>()).add(change);
+        }
+        Long[] userIds = byUser.keySet().toArray(new Long[0]);
+        Long[] counts = byUser.values().stream().map(list -> (long) list.size()).toArray(Long[]::new);
+
+        Map<Long, Long> lastSeqs = new TreeMap<>();
+        jdbcTemplate.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement(
+                    "INSERT INTO user_change_cursors (user_id, last_seq) " +
+                    "SELECT user_id, n FROM unnest(?, ?) AS t(user_id, n) ORDER BY user_id " +
+                    "ON CONFLICT (user_id) DO UPDATE SET last_seq = user_change_cursors.last_seq + EXCLUDED.last_seq " +
+                    "RETURNING user_id, last_seq");
+            statement.setArray(1, connection.createArrayOf("bigint", userIds));
+            statement.setArray(2, connection.createArrayOf("bigint", counts));
+            return statement;
+        }, rs -> {
+            lastSeqs.put(rs.getLong(1), rs.getLong(2));
+        });
+
+        List<Object[]> rows = new ArrayList<>(changes.size());
+        byUser.forEach((userId, userChanges) -> {
+            long seq = lastSeqs.get(userId) - userChanges.size();
+            for (Change change : userChanges) {
+                rows.add(new Object[]{userId, ++seq, change.kind().name(), change.conversationId(), change.messageId()});
+            }
+        });
+        jdbcTemplate.batchUpdate("INSERT INTO user_changes (user_id, seq, kind, conversation_id, message_id) " +
+                "VALUES (?, ?, ?, ?, ?)", rows);
+    }
+
+    // Entries after seq, oldest first
+    public List<Entry> read(Long userId, long afterSeq, int limit) {
+        return jdbcTemplate.query("SELECT seq, kind, conversation_id, message_id FROM user_changes " +
+                        "WHERE user_id = ? AND seq > ? ORDER BY seq LIMIT ?",
+                (rs, rowNum) -> new Entry(
+                        rs.getLong("seq"),
+                        Kind.valueOf(rs.getString("kind")),
+                        rs.getLong("conversation_id"),
+                        rs.getObject("message_id", Long.class)),
+                userId, afterSeq, limit);
+    }
+
+    // 0 for a user without any change yet
+    public long lastSeq(Long userId) {
+        List<Long> seqs = jdbcTemplate.queryForList(
+                "SELECT last_seq FROM user_change_cursors WHERE user_id = ?", Long.class, userId);
+        return seqs.isEmpty() ? 0 : seqs.get(0);
+    }
+
+    private void runPruneLoop() {
+        while (running) {
+            try {
+                Thread.sleep(pruneInterval.toMillis());
+                int pruned = jdbcTemplate.update("DELETE FROM user_changes WHERE created_at < ?",
+                        Timestamp.valueOf(LocalDateTime.now().minus(retention)));
+                if (pruned > 0) {
+                    log.info("Pruned {} user changes older than {}", pruned, retention);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e) {
+                log.error("User change log pruning failed; will retry", e);
+            }
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package com.pigeon.messenger.service.weather;
+
+import com.pigeon.messenger.dto.WeatherDTO;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.Optional;
+
+// Local/offline provider: never has live data, so every lookup resolves to the deterministic mock
+@Component
+@ConditionalOnProperty(name = "pigeon.weather.provider", havingValue = "stub", matchIfMissing = true)
+public class StubWeatherProvider implements WeatherProvider {
+
+    @Override
+    public Optional<WeatherDTO> fetch(String areaCode) {
+        return Optional.empty();
+    }
+}
@@ -0,0 +1,60 @@
+package com.pigeon.messenger.service.weather;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.pigeon.messenger.dto.WeatherDTO;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestClient;
+
+import java.util.Optional;
+
+// WeatherAPI.com current conditions, mapped to delay multipliers the same way as pigeon-weather.js
+@Component
+@ConditionalOnProperty(name = "pigeon.weather.provider", havingValue = "weatherapi")
+public class WeatherApiProvider implements WeatherProvider {
+
+    private final RestClient restClient;
+    private final String apiKey;
+
+    public WeatherApiProvider(@Value("${pigeon.weather.api-url:https://api.weatherapi.com/v1/current.json}") String apiUrl,
+                              @Value("${pigeon.weather.api-key}") String apiKey) {
+        this.restClient = RestClient.builder().baseUrl(apiUrl).build();
+        this.apiKey = apiKey;
+    }
+
+    @Override
+    public Optional<WeatherDTO> fetch(String areaCode) {
+        JsonNode data = restClient.get()
+                .uri(uri -> uri.queryParam("key", apiKey).queryParam("q", areaCode).queryParam("aqi", "no").build())
+                .retrieve()
+                .body(JsonNode.class);
+        if (data == null || !data.hasNonNull("current")) {
+            return Optional.empty();
+        }
+
+        JsonNode current = data.get("current");
+        String condition = current.path("condition").path("text").asText("");
+        return Optional.of(new WeatherDTO(
+                condition,
+                (int) Math.round(current.path("temp_f").asDouble()),
+                current.path("condition").path("icon").asText(null),
+                multiplierFor(condition.toLowerCase()),
+                true));
+    }
+
+    private static double multiplierFor(String condition) {
+        if (condition.contains("rain") || condition.contains("drizzle")) {
+            return 1.5;
+        } else if (condition.contains("storm") || condition.contains("thunder")) {
+            return 2.0;
+        } else if (condition.contains("snow") || condition.contains("blizzard")) {
+            return 2.5;
+        } else if (condition.contains("cloud") || condition.contains("overcast")) {
+            return 1.2;
+        } else if (condition.contains("fog") || condition.contains("mist")) {
+            return 1.4;
+        }
+        return 1.0;
+    }
+}
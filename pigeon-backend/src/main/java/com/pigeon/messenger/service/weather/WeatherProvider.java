@@ -0,0 +1,10 @@
+package com.pigeon.messenger.service.weather;
+
+import com.pigeon.messenger.dto.WeatherDTO;
+
+import java.util.Optional;
+
+// Source of live conditions for an area code; empty means "no live data, use the deterministic mock"
+public interface WeatherProvider {
+    Optional<WeatherDTO> fetch(String areaCode);
+}
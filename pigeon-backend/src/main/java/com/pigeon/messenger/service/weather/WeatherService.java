@@ -0,0 +1,152 @@
+package com.pigeon.messenger.service.weather;
+
+import com.github.benmanes.caffeine.cache.AsyncLoadingCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.pigeon.messenger.dto.WeatherDTO;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// Server-side port of pigeon-weather.js. Results are cached per area code with TTL eviction; the async
+// cache coalesces concurrent lookups for the same area code into one provider call. ETA computation
+// only ever reads what is already cached and falls back to the deterministic mock, so it never waits
+// on the provider.
+@Service
+public class WeatherService {
+
+    private static final Logger log = LoggerFactory.getLogger(WeatherService.class);
+
+    private static final String DEFAULT_AREA_CODE = "555";
+
+    // Same order as getDeterministicMockWeather: area code modulo pattern count picks the weather
+    private static final List<WeatherDTO> MOCK_PATTERNS = List.of(
+            new WeatherDTO("Clear", 72, "☀️", 1.0, false),
+            new WeatherDTO("Partly Cloudy", 68, "⛅", 1.1, false),
+            new WeatherDTO("Cloudy", 65, "☁️", 1.2, false),
+            new WeatherDTO("Light Rain", 58, "🌦️", 1.3, false),
+            new WeatherDTO("Rain", 55, "🌧️", 1.5, false),
+            new WeatherDTO("Thunderstorm", 60, "⛈️", 2.0, false),
+            new WeatherDTO("Snow", 32, "❄️", 2.5, false),
+            new WeatherDTO("Fog", 50, "🌫️", 1.4, false)
+    );
+
+    @Autowired
+    private WeatherProvider provider;
+
+    @Value("${pigeon.weather.cache-ttl:PT15M}")
+    private Duration cacheTtl;
+
+    @Value("${pigeon.weather.cache-size:10000}")
+    private long cacheSize;
+
+    @Value("${pigeon.weather.lookup-threads:4}")
+    private int lookupThreads;
+
+    @Value("${pigeon.flight.time-per-mile:PT1M}")
+    private Duration timePerMile;
+
+    private ExecutorService lookupExecutor;
+    private AsyncLoadingCache<String, WeatherDTO> cache;
+
+    @PostConstruct
+    public void init() {
+        lookupExecutor = Executors.newFixedThreadPool(lookupThreads, runnable -> {
+            Thread thread = new Thread(runnable, "weather-lookup");
+            thread.setDaemon(true);
+            return thread;
+        });
+        cache = Caffeine.newBuilder()
+                .maximumSize(cacheSize)
+                .expireAfterWrite(cacheTtl)
+                .executor(lookupExecutor)
+                .buildAsync(this::load);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        lookupExecutor.shutdownNow();
+    }
+
+    // Blocking lookup for callers that can wait (e.g. a weather report endpoint)
+    public WeatherDTO getWeather(String areaCode) {
+        return cache.get(normalize(areaCode)).join();
+    }
+
+    // Non-blocking: cached result if present, otherwise the mock while a lookup warms the cache
+    public WeatherDTO getWeatherNow(String areaCode) {
+        CompletableFuture<WeatherDTO> future = cache.get(normalize(areaCode));
+        WeatherDTO cached = future.isDone() && !future.isCompletedExceptionally() ? future.getNow(null) : null;
+        return cached != null ? cached : getDeterministicMockWeather(areaCode);
+    }
+
+    // Worst weather along the route decides the delay, as in getRouteWeather
+    public double routeMultiplier(String fromAreaCode, String toAreaCode) {
+        return Math.max(getWeatherNow(fromAreaCode).getDelayMultiplier(),
+                getWeatherNow(toAreaCode).getDelayMultiplier());
+    }
+
+    // calculateDistance + calculateDelivery: area code difference as miles, one time-per-mile per mile
+    public Duration estimateFlightDuration(String fromAreaCode, String toAreaCode) {
+        int miles = calculateDistance(fromAreaCode, toAreaCode);
+        double multiplier = routeMultiplier(fromAreaCode, toAreaCode);
+        return Duration.ofMillis(Math.round(miles * timePerMile.toMillis() * multiplier));
+    }
+
+    public static WeatherDTO getDeterministicMockWeather(String areaCode) {
+        int code = parseOr(areaCode, 0);
+        if (code == 0) {
+            code = 555; // parseInt(areaCode) || 555
+        }
+        WeatherDTO pattern = MOCK_PATTERNS.get(Math.floorMod(code, MOCK_PATTERNS.size()));
+        return new WeatherDTO(pattern.getCondition(), pattern.getTemperature(), pattern.getIcon(),
+                pattern.getDelayMultiplier(), false);
+    }
+
+    public static int calculateDistance(String fromAreaCode, String toAreaCode) {
+        int diff = Math.abs(parseOr(fromAreaCode, 0) - parseOr(toAreaCode, 0));
+        return Math.min(500, Math.max(10, diff * 5));
+    }
+
+    // Phone numbers are stored as entered (e.g. +12125550100); take the NANP area code after any leading 1
+    public static String areaCodeOf(String phone) {
+        if (phone == null) {
+            return DEFAULT_AREA_CODE;
+        }
+        String digits = phone.replaceAll("\\D", "");
+        if (digits.length() == 11 && digits.startsWith("1")) {
+            digits = digits.substring(1);
+        }
+        return digits.length() >= 3 ? digits.substring(0, 3) : DEFAULT_AREA_CODE;
+    }
+
+    private WeatherDTO load(String areaCode) {
+        try {
+            return provider.fetch(areaCode).orElseGet(() -> getDeterministicMockWeather(areaCode));
+        } catch (RuntimeException e) {
+            log.warn("Live weather lookup failed for area code {}; using mock", areaCode, e);
+            return getDeterministicMockWeather(areaCode);
+        }
+    }
+
+    private static String normalize(String areaCode) {
+        return areaCode == null || areaCode.isBlank() ? DEFAULT_AREA_CODE : areaCode.trim();
+    }
+
+    private static int parseOr(String value, int fallback) {
+        try {
+            return value == null ? fallback : Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            return fallback;
+        }
+    }
+}
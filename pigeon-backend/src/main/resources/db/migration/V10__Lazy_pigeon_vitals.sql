@@ -0,0 +1,7 @@
+-- Vitals are derived on read: energy is a base value plus passive recovery since energy_updated_at,
+-- mood follows from that energy and the last activity. Rows change only on feed/send.
+ALTER TABLE pigeons ADD COLUMN energy_updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP;
+ALTER TABLE pigeons ADD COLUMN last_fed_at TIMESTAMP;
+ALTER TABLE pigeons ADD COLUMN last_message_sent_at TIMESTAMP;
+
+UPDATE pigeons SET energy_updated_at = CURRENT_TIMESTAMP WHERE energy_updated_at IS NULL;
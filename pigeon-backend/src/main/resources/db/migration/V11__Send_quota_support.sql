@@ -0,0 +1,8 @@
+-- XP earned by sending, written back from the in-memory send quota ledger
+ALTER TABLE pigeons ADD COLUMN xp INT DEFAULT 0;
+
+UPDATE pigeons SET xp = 0 WHERE xp IS NULL;
+
+-- Seeds a user's daily send count (sender_id, created_at >= start of day) when a node first sees them
+CREATE INDEX idx_messages_sender_created_at ON messages(sender_id, created_at);
+DROP INDEX IF EXISTS idx_messages_sender;
@@ -0,0 +1,6 @@
+-- Full-text search over message bodies. The vector is a stored generated column, so Postgres keeps it
+-- in step with every insert path (JPA batches, JDBC load generation) without application code.
+ALTER TABLE messages ADD COLUMN search_vector tsvector
+    GENERATED ALWAYS AS (to_tsvector('english', body)) STORED;
+
+CREATE INDEX idx_messages_search ON messages USING GIN (search_vector);
@@ -0,0 +1,93 @@
+-- messages becomes a table partitioned by month of created_at (messages_pYYYYMM, plus messages_default
+-- for anything outside the created ranges). MessagePartitionManager keeps months ahead of time and moves
+-- old months to message_archive. Postgres requires the partition key in every unique constraint, so:
+--   * the primary key becomes (id, created_at); ids still come from messages_id_seq and stay unique
+--   * foreign keys pointing at messages(id) are dropped; flights and last_message_id keep plain ids
+--   * (sender_id, client_nonce) uniqueness moves to message_nonces, which is not partitioned
+
+ALTER TABLE conversations DROP CONSTRAINT IF EXISTS fk_conversations_last_message;
+ALTER TABLE flights DROP CONSTRAINT IF EXISTS flights_message_id_fkey;
+
+ALTER TABLE messages RENAME TO messages_unpartitioned;
+ALTER TABLE messages_unpartitioned RENAME CONSTRAINT messages_pkey TO messages_unpartitioned_pkey;
+DROP INDEX IF EXISTS idx_messages_conversation_id;
+DROP INDEX IF EXISTS idx_messages_created_at;
+DROP INDEX IF EXISTS idx_messages_sender_created_at;
+DROP INDEX IF EXISTS idx_messages_search;
+DROP INDEX IF EXISTS uq_messages_sender_client_nonce;
+-- Keep the id sequence when the old table goes
+ALTER SEQUENCE messages_id_seq OWNED BY NONE;
+
+CREATE TABLE messages (
+    id BIGINT NOT NULL DEFAULT nextval('messages_id_seq'),
+    conversation_id BIGINT REFERENCES conversations(id) ON DELETE CASCADE,
+    sender_id BIGINT REFERENCES users(id) ON DELETE CASCADE,
+    body TEXT NOT NULL,
+    client_nonce VARCHAR(100),
+    created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    status VARCHAR(20) DEFAULT 'sent',
+    search_vector tsvector GENERATED ALWAYS AS (to_tsvector('english', body)) STORED,
+    CONSTRAINT check_status CHECK (status IN ('sending', 'sent', 'delivered', 'read')),
+    PRIMARY KEY (id, created_at)
+) PARTITION BY RANGE (created_at);
+
+ALTER SEQUENCE messages_id_seq OWNED BY messages.id;
+
+-- One partition per month from the oldest message through three months ahead
+DO $$
+DECLARE
+    part_month DATE := date_trunc('month', COALESCE(
+            (SELECT MIN(created_at) FROM messages_unpartitioned), CURRENT_TIMESTAMP))::date;
+    last_month DATE := (date_trunc('month', CURRENT_TIMESTAMP) + INTERVAL '3 months')::date;
+BEGIN
+    WHILE part_month <= last_month LOOP
+        EXECUTE format('CREATE TABLE %I PARTITION OF messages FOR VALUES FROM (%L) TO (%L)',
+                       'messages_p' || to_char(part_month, 'YYYYMM'), part_month, (part_month + INTERVAL '1 month')::date);
+        part_month := (part_month + INTERVAL '1 month')::date;
+    END LOOP;
+END $$;
+
+CREATE TABLE messages_default PARTITION OF messages DEFAULT;
+
+INSERT INTO messages (id, conversation_id, sender_id, body, client_nonce, created_at, status)
+SELECT id, conversation_id, sender_id, body, client_nonce, COALESCE(created_at, CURRENT_TIMESTAMP), status
+FROM messages_unpartitioned;
+
+-- At most one message per sender and nonce; the ingestion batch inserts here in the same transaction
+CREATE TABLE message_nonces (
+    sender_id BIGINT NOT NULL,
+    client_nonce VARCHAR(100) NOT NULL,
+    message_id BIGINT NOT NULL,
+    created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    PRIMARY KEY (sender_id, client_nonce)
+);
+CREATE INDEX idx_message_nonces_created_at ON message_nonces(created_at);
+
+INSERT INTO message_nonces (sender_id, client_nonce, message_id, created_at)
+SELECT sender_id, client_nonce, id, COALESCE(created_at, CURRENT_TIMESTAMP)
+FROM messages_unpartitioned
+WHERE client_nonce IS NOT NULL;
+
+DROP TABLE messages_unpartitioned;
+
+-- Indexes on the parent are created on every partition, current and future. There is no global
+-- created_at index any more: partition bounds do that job.
+CREATE INDEX idx_messages_conversation_id ON messages(conversation_id, id DESC);
+CREATE INDEX idx_messages_sender_created_at ON messages(sender_id, created_at);
+CREATE INDEX idx_messages_sender_client_nonce ON messages(sender_id, client_nonce) WHERE client_nonce IS NOT NULL;
+CREATE INDEX idx_messages_search ON messages USING GIN (search_vector);
+
+-- Cold history: archived months as gzip'd JSON chunks of up to pigeon.archive.chunk-size messages per
+-- conversation, newest first. Already compressed, so TOAST stores the payload as is.
+CREATE TABLE message_archive (
+    conversation_id BIGINT NOT NULL,
+    min_id BIGINT NOT NULL,
+    max_id BIGINT NOT NULL,
+    message_count INT NOT NULL,
+    partition_month DATE NOT NULL,
+    payload BYTEA NOT NULL,
+    PRIMARY KEY (conversation_id, min_id)
+);
+ALTER TABLE message_archive ALTER COLUMN payload SET STORAGE EXTERNAL;
+CREATE INDEX idx_message_archive_conversation_max_id ON message_archive(conversation_id, max_id DESC);
+CREATE INDEX idx_message_archive_max_id ON message_archive(max_id);
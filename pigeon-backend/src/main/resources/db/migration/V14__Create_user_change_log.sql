@@ -0,0 +1,21 @@
+-- Per-user change log behind GET /api/sync. seq is dense and increasing per user: writers allocate it
+-- from user_change_cursors under that user's row lock, so a user's changes commit in seq order and a
+-- client resuming after seq N cannot skip one. Rows older than pigeon.sync.retention are pruned; a
+-- client whose cursor falls into the pruned range is told to reload.
+CREATE TABLE user_change_cursors (
+    user_id BIGINT PRIMARY KEY,
+    last_seq BIGINT NOT NULL
+);
+
+-- kind: MESSAGE (message_id set), RECEIPT or CONVERSATION; only references, the sync reads current state
+CREATE TABLE user_changes (
+    user_id BIGINT NOT NULL,
+    seq BIGINT NOT NULL,
+    kind VARCHAR(20) NOT NULL,
+    conversation_id BIGINT NOT NULL,
+    message_id BIGINT,
+    created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    PRIMARY KEY (user_id, seq)
+);
+
+CREATE INDEX idx_user_changes_created_at ON user_changes(created_at);
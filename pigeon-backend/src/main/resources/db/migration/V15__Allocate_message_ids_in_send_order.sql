@@ -0,0 +1,5 @@
+-- Message ids must follow send time across nodes: history cursors, read/delivered watermarks and
+-- last_message_id all compare ids. Pooled blocks of 50 per node (V7) broke that once several nodes
+-- ingest, so the ingestion batch now takes its ids from the sequence one by one at flush time, in a
+-- single statement. Every node must run a version with allocationSize = 1 on Message.
+ALTER SEQUENCE messages_id_seq INCREMENT BY 1;
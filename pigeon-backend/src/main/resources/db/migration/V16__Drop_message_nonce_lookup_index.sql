@@ -0,0 +1,3 @@
+-- Duplicate sends are found through message_nonces (sender_id, client_nonce) and then read by id and
+-- created_at, so the per-partition nonce index on messages has no readers left
+DROP INDEX IF EXISTS idx_messages_sender_client_nonce;
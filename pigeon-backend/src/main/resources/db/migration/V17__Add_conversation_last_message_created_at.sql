@@ -0,0 +1,9 @@
+-- The inbox joins each conversation's last message; with the message's created_at stored next to its id
+-- the join carries the partition key and reads one month's partition instead of probing all of them.
+-- Conversations whose last message is already archived keep NULL and fall back to the archive as before.
+ALTER TABLE conversations ADD COLUMN last_message_created_at TIMESTAMP;
+
+UPDATE conversations c
+SET last_message_created_at = m.created_at
+FROM messages m
+WHERE m.id = c.last_message_id;
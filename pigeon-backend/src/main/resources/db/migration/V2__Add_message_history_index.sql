@@ -0,0 +1,5 @@
+-- Keyset pagination over a conversation's history walks (conversation_id, id)
+CREATE INDEX idx_messages_conversation_id ON messages(conversation_id, id DESC);
+
+-- Superseded by the composite index above
+DROP INDEX IF EXISTS idx_messages_conversation;
@@ -0,0 +1,3 @@
+-- The inbox query matches either participant column; (participant_a_id, participant_b_id)
+-- already serves the first, this serves the second
+CREATE INDEX idx_conversations_participant_b ON conversations(participant_b_id);
@@ -0,0 +1,13 @@
+-- Per-user, per-conversation read state: materialized unread counter plus read watermark
+CREATE TABLE conversation_read_state (
+    id BIGSERIAL PRIMARY KEY,
+    conversation_id BIGINT REFERENCES conversations(id) ON DELETE CASCADE,
+    user_id BIGINT REFERENCES users(id) ON DELETE CASCADE,
+    unread_count INT NOT NULL DEFAULT 0,
+    last_read_message_id BIGINT,
+    updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    UNIQUE(conversation_id, user_id),
+    CONSTRAINT check_unread_count CHECK (unread_count >= 0)
+);
+
+CREATE INDEX idx_read_state_user ON conversation_read_state(user_id);
@@ -0,0 +1,7 @@
+-- Receipts are tracked as per-user watermarks on conversation_read_state;
+-- per-message status is derived from them on read
+ALTER TABLE conversation_read_state ADD COLUMN last_delivered_message_id BIGINT;
+
+UPDATE conversation_read_state SET last_delivered_message_id = last_read_message_id;
+
+DROP TABLE message_status;
@@ -0,0 +1,19 @@
+-- Retried sends carry the same client_nonce; at most one row per sender and nonce.
+-- Keep the earliest copy of any duplicates written before this constraint existed.
+UPDATE conversations c SET last_message_id = dedup.keep_id
+FROM (
+    SELECT id, MIN(id) OVER (PARTITION BY sender_id, client_nonce) AS keep_id
+    FROM messages
+    WHERE client_nonce IS NOT NULL
+) dedup
+WHERE c.last_message_id = dedup.id AND dedup.id <> dedup.keep_id;
+
+DELETE FROM messages d
+USING messages k
+WHERE d.sender_id = k.sender_id
+  AND d.client_nonce = k.client_nonce
+  AND d.id > k.id;
+
+CREATE UNIQUE INDEX uq_messages_sender_client_nonce
+    ON messages(sender_id, client_nonce)
+    WHERE client_nonce IS NOT NULL;
@@ -0,0 +1,3 @@
+-- Message ids are allocated by Hibernate's pooled optimizer in blocks of 50 so inserts can be batched;
+-- the sequence increment must match @SequenceGenerator.allocationSize on Message
+ALTER SEQUENCE messages_id_seq INCREMENT BY 50;
@@ -0,0 +1,12 @@
+-- Transactional outbox: broadcasts are written in the same transaction as the data they announce
+-- and drained to the broker by OutboxDispatcher. Ids come from a pooled sequence so inserts batch.
+CREATE SEQUENCE outbox_events_id_seq INCREMENT BY 50;
+
+CREATE TABLE outbox_events (
+    id BIGINT PRIMARY KEY DEFAULT nextval('outbox_events_id_seq'),
+    destination VARCHAR(255) NOT NULL,
+    payload TEXT NOT NULL,
+    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+);
+
+ALTER SEQUENCE outbox_events_id_seq OWNED BY outbox_events.id;
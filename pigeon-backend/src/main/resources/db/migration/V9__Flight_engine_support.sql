@@ -0,0 +1,6 @@
+-- Flight ids come from a pooled sequence so the ingestion batch can insert them with JDBC batching;
+-- the increment must match @SequenceGenerator.allocationSize on Flight
+ALTER SEQUENCE flights_id_seq INCREMENT BY 50;
+
+-- Startup rebuild scans in-flight rows by id and needs only their ETA: keep that an index-only scan
+CREATE INDEX idx_flights_flying ON flights(id) INCLUDE (eta_at) WHERE state = 'flying';
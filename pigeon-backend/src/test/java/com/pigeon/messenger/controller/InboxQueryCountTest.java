@@ -0,0 +1,152 @@
+package com.pigeon.messenger.controller;
+
+import com.pigeon.messenger.PigeonMessengerApplication;
+import com.pigeon.messenger.dto.ConversationDTO;
+import com.pigeon.messenger.entity.Conversation;
+import com.pigeon.messenger.entity.Message;
+import com.pigeon.messenger.entity.User;
+import com.pigeon.messenger.repository.ConversationRepository;
+import com.pigeon.messenger.repository.MessageRepository;
+import com.pigeon.messenger.repository.UserRepository;
+import com.pigeon.messenger.security.AuthenticatedUser;
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Regression guard for the inbox: loading it must cost the same number of SQL statements however many
+// conversations the user has, i.e. no per-conversation lookups
+class InboxQueryCountTest {
+
+    private static final int MANY = 25;
+
+    private static EmbeddedPostgres postgres;
+    private static ConfigurableApplicationContext context;
+
+    @BeforeAll
+    static void start() throws Exception {
+        postgres = EmbeddedPostgres.builder().start();
+        context = new SpringApplicationBuilder(PigeonMessengerApplication.class).run(
+                "--spring.datasource.url=" + postgres.getJdbcUrl("postgres", "postgres"),
+                "--spring.datasource.username=postgres",
+                "--spring.datasource.password=postgres",
+                // Not demo, which would seed users and conversations of its own
+                "--spring.profiles.active=test",
+                "--spring.jpa.properties.hibernate.session_factory.statement_inspector="
+                        + StatementCounter.class.getName(),
+                "--server.port=0");
+    }
+
+    @AfterAll
+    static void stop() throws Exception {
+        if (context != null) {
+            context.close();
+        }
+        if (postgres != null) {
+            postgres.close();
+        }
+    }
+
+    @Test
+    void inboxStatementCountDoesNotGrowWithConversations() {
+        User single = createUser("Single", "+12125550001");
+        createConversationWithMessage(single, createUser("Partner", "+12125550002"));
+
+        User busy = createUser("Busy", "+12125550003");
+        for (int i = 0; i < MANY; i++) {
+            createConversationWithMessage(busy, createUser("Friend " + i, "+1212555" + (1000 + i)));
+        }
+
+        Counted one = countInbox(single);
+        Counted many = countInbox(busy);
+
+        assertThat(one.conversations()).isEqualTo(1);
+        assertThat(many.conversations()).isEqualTo(MANY);
+        assertThat(many.statements()).isEqualTo(one.statements());
+    }
+
+    private Counted countInbox(User user) {
+        ConversationController controller = context.getBean(ConversationController.class);
+        AuthenticatedUser principal = new AuthenticatedUser(user.getId(), user.getPhone(),
+                Instant.now().plusSeconds(3600));
+
+        StatementCounter.startCounting();
+        try {
+            List<ConversationDTO> inbox = controller.getConversations(principal).getBody();
+            assertThat(inbox).allSatisfy(conversation -> {
+                assertThat(conversation.getLastMessage()).isNotNull();
+                assertThat(conversation.getOtherParticipantName()).isNotNull();
+            });
+            return new Counted(inbox.size(), StatementCounter.count());
+        } finally {
+            StatementCounter.stopCounting();
+        }
+    }
+
+    private User createUser(String displayName, String phone) {
+        User user = new User();
+        user.setPhone(phone);
+        user.setDisplayName(displayName);
+        user.setPasswordHash("unused");
+        return context.getBean(UserRepository.class).save(user);
+    }
+
+    private void createConversationWithMessage(User user, User other) {
+        ConversationRepository conversationRepository = context.getBean(ConversationRepository.class);
+        Conversation conversation = new Conversation();
+        conversation.setParticipantAId(user.getId());
+        conversation.setParticipantBId(other.getId());
+        conversation = conversationRepository.save(conversation);
+
+        Message message = new Message();
+        message.setConversationId(conversation.getId());
+        message.setSenderId(other.getId());
+        message.setBody("Hello from " + other.getDisplayName());
+        message = context.getBean(MessageRepository.class).save(message);
+
+        conversation.setLastMessageId(message.getId());
+        conversation.setLastMessageCreatedAt(message.getCreatedAt());
+        conversationRepository.save(conversation);
+    }
+
+    private record Counted(int conversations, int statements) {
+    }
+
+    // Counts the SQL Hibernate prepares on the counting thread only, so background work of the
+    // application does not disturb the numbers
+    public static class StatementCounter implements StatementInspector {
+
+        private static volatile Thread countingThread;
+        private static final AtomicInteger statements = new AtomicInteger();
+
+        static void startCounting() {
+            statements.set(0);
+            countingThread = Thread.currentThread();
+        }
+
+        static void stopCounting() {
+            countingThread = null;
+        }
+
+        static int count() {
+            return statements.get();
+        }
+
+        @Override
+        public String inspect(String sql) {
+            if (Thread.currentThread() == countingThread) {
+                statements.incrementAndGet();
+            }
+            return sql;
+        }
+    }
+}
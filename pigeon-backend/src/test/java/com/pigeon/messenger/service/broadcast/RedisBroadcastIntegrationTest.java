@@ -0,0 +1,214 @@
+package com.pigeon.messenger.service.broadcast;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pigeon.messenger.PigeonMessengerApplication;
+import com.pigeon.messenger.entity.Conversation;
+import com.pigeon.messenger.entity.User;
+import com.pigeon.messenger.repository.ConversationRepository;
+import com.pigeon.messenger.repository.UserRepository;
+import com.pigeon.messenger.security.JwtUtil;
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.messaging.converter.MappingJackson2MessageConverter;
+import org.springframework.messaging.simp.stomp.StompFrameHandler;
+import org.springframework.messaging.simp.stomp.StompHeaders;
+import org.springframework.messaging.simp.stomp.StompSession;
+import org.springframework.messaging.simp.stomp.StompSessionHandlerAdapter;
+import org.springframework.messaging.simp.user.SimpUser;
+import org.springframework.messaging.simp.user.SimpUserRegistry;
+import org.springframework.web.socket.WebSocketHttpHeaders;
+import org.springframework.web.socket.client.standard.StandardWebSocketClient;
+import org.springframework.web.socket.messaging.WebSocketStompClient;
+import org.springframework.web.socket.sockjs.client.SockJsClient;
+import org.springframework.web.socket.sockjs.client.WebSocketTransport;
+import org.testcontainers.containers.GenericContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import org.testcontainers.utility.DockerImageName;
+
+import java.lang.reflect.Type;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Two application nodes sharing one Postgres and one Redis, in pigeon.broadcast.mode=redis. A message
+// sent through node A must reach the recipient's session on node B, and every session of the recipient
+// (on B and on A itself) must see it exactly once: A's own publication comes back to A through Redis
+// and must not be delivered a second time.
+@Testcontainers
+class RedisBroadcastIntegrationTest {
+
+    @Container
+    private static final GenericContainer<?> REDIS =
+            new GenericContainer<>(DockerImageName.parse("redis:7-alpine")).withExposedPorts(6379);
+
+    private static final Duration DELIVERY_TIMEOUT = Duration.ofSeconds(10);
+    // How long to keep listening for a second copy after the first arrived
+    private static final Duration DUPLICATE_WINDOW = Duration.ofSeconds(3);
+
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+
+    private static EmbeddedPostgres postgres;
+    private static ConfigurableApplicationContext nodeA;
+    private static ConfigurableApplicationContext nodeB;
+    private static final List<StompSession> sessions = new ArrayList<>();
+
+    @BeforeAll
+    static void start() throws Exception {
+        postgres = EmbeddedPostgres.builder().start();
+        // One after the other, so only the first runs the Flyway migrations
+        nodeA = startNode();
+        nodeB = startNode();
+    }
+
+    @AfterAll
+    static void stop() throws Exception {
+        sessions.forEach(session -> {
+            if (session.isConnected()) {
+                session.disconnect();
+            }
+        });
+        for (ConfigurableApplicationContext node : new ConfigurableApplicationContext[]{nodeB, nodeA}) {
+            if (node != null) {
+                node.close();
+            }
+        }
+        if (postgres != null) {
+            postgres.close();
+        }
+    }
+
+    @Test
+    void messageSentOnOneNodeReachesSubscribersOnEveryNodeExactlyOnce() throws Exception {
+        User sender = createUser("Sender", "+12125550101");
+        User recipient = createUser("Recipient", "+14155550101");
+        Conversation conversation = new Conversation();
+        conversation.setParticipantAId(sender.getId());
+        conversation.setParticipantBId(recipient.getId());
+        Long conversationId = nodeA.getBean(ConversationRepository.class).save(conversation).getId();
+
+        String recipientToken = nodeA.getBean(JwtUtil.class).generateToken(recipient.getPhone(), recipient.getId());
+        BlockingQueue<JsonNode> onB = subscribe(nodeB, recipientToken);
+        BlockingQueue<JsonNode> onA = subscribe(nodeA, recipientToken);
+        awaitSubscribed(nodeB, recipient.getId());
+        awaitSubscribed(nodeA, recipient.getId());
+
+        String nonce = "redis-it-" + System.nanoTime();
+        String senderToken = nodeA.getBean(JwtUtil.class).generateToken(sender.getPhone(), sender.getId());
+        HttpResponse<String> response = HttpClient.newHttpClient().send(
+                HttpRequest.newBuilder(URI.create(baseUrl(nodeA) + "/api/conversations/" + conversationId + "/messages"))
+                        .header("Authorization", "Bearer " + senderToken)
+                        .header("Content-Type", "application/json")
+                        .POST(HttpRequest.BodyPublishers.ofString(objectMapper.writeValueAsString(
+                                objectMapper.createObjectNode().put("body", "Across nodes").put("clientNonce", nonce))))
+                        .build(),
+                HttpResponse.BodyHandlers.ofString());
+        assertThat(response.statusCode()).isEqualTo(200);
+
+        assertThat(nextMessage(onB, nonce, DELIVERY_TIMEOUT)).as("delivered on node B").isNotNull();
+        assertThat(nextMessage(onA, nonce, DELIVERY_TIMEOUT)).as("delivered on node A").isNotNull();
+        assertThat(nextMessage(onB, nonce, DUPLICATE_WINDOW)).as("second copy on node B").isNull();
+        assertThat(nextMessage(onA, nonce, DUPLICATE_WINDOW)).as("second copy on node A").isNull();
+    }
+
+    private static ConfigurableApplicationContext startNode() {
+        return new SpringApplicationBuilder(PigeonMessengerApplication.class).run(
+                "--spring.datasource.url=" + postgres.getJdbcUrl("postgres", "postgres"),
+                "--spring.datasource.username=postgres",
+                "--spring.datasource.password=postgres",
+                "--spring.data.redis.host=" + REDIS.getHost(),
+                "--spring.data.redis.port=" + REDIS.getMappedPort(6379),
+                // Not demo, whose seed data both nodes would try to insert
+                "--spring.profiles.active=test",
+                "--server.port=0",
+                "--pigeon.broadcast.mode=redis",
+                "--pigeon.events.delivery=user-queue",
+                "--pigeon.cache.l2=none");
+    }
+
+    private static String baseUrl(ConfigurableApplicationContext node) {
+        return "http://localhost:" + node.getEnvironment().getProperty("local.server.port");
+    }
+
+    private static User createUser(String displayName, String phone) {
+        User user = new User();
+        user.setPhone(phone);
+        user.setDisplayName(displayName);
+        user.setPasswordHash("unused");
+        return nodeA.getBean(UserRepository.class).save(user);
+    }
+
+    // Frames of one STOMP session on /user/queue/events, as they arrive
+    private static BlockingQueue<JsonNode> subscribe(ConfigurableApplicationContext node, String token) throws Exception {
+        WebSocketStompClient stompClient = new WebSocketStompClient(
+                new SockJsClient(List.of(new WebSocketTransport(new StandardWebSocketClient()))));
+        stompClient.setMessageConverter(new MappingJackson2MessageConverter());
+        StompHeaders connectHeaders = new StompHeaders();
+        connectHeaders.add("Authorization", "Bearer " + token);
+        StompSession session = stompClient.connectAsync(baseUrl(node) + "/ws", new WebSocketHttpHeaders(),
+                connectHeaders, new StompSessionHandlerAdapter() {}).get(10, TimeUnit.SECONDS);
+        sessions.add(session);
+
+        BlockingQueue<JsonNode> frames = new LinkedBlockingQueue<>();
+        session.subscribe("/user/queue/events", new StompFrameHandler() {
+            @Override
+            public Type getPayloadType(StompHeaders headers) {
+                return JsonNode.class;
+            }
+
+            @Override
+            public void handleFrame(StompHeaders headers, Object payload) {
+                frames.add((JsonNode) payload);
+            }
+        });
+        return frames;
+    }
+
+    // SUBSCRIBE is not acknowledged, so wait until the node's user registry has seen it
+    private static void awaitSubscribed(ConfigurableApplicationContext node, Long userId) throws InterruptedException {
+        SimpUserRegistry registry = node.getBean(SimpUserRegistry.class);
+        long deadline = System.nanoTime() + DELIVERY_TIMEOUT.toNanos();
+        while (System.nanoTime() < deadline) {
+            SimpUser user = registry.getUser(String.valueOf(userId));
+            if (user != null && user.getSessions().stream().anyMatch(s -> !s.getSubscriptions().isEmpty())) {
+                return;
+            }
+            Thread.sleep(50);
+        }
+        throw new AssertionError("User " + userId + " never subscribed on " + baseUrl(node));
+    }
+
+    // The next message event carrying nonce, skipping receipts, flights and other messages; null on timeout
+    private static JsonNode nextMessage(BlockingQueue<JsonNode> frames, String nonce, Duration timeout)
+            throws InterruptedException {
+        long deadline = System.nanoTime() + timeout.toNanos();
+        while (true) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                return null;
+            }
+            JsonNode frame = frames.poll(remaining, TimeUnit.NANOSECONDS);
+            if (frame == null) {
+                return null;
+            }
+            if ("message".equals(frame.path("type").asText())
+                    && nonce.equals(frame.path("payload").path("clientNonce").asText())) {
+                return frame;
+            }
+        }
+    }
+}
@@ -4,12 +4,11 @@ import { useConversationStore } from '../store/conversationStore';
 import { useAuthStore } from '../store/authStore';
 import { motion, AnimatePresence } from 'framer-motion';
 import { Send, ArrowLeft } from 'lucide-react';
-import { subscribeToConversation } from '../services/websocket';
 
 export const ConversationThread = () => {
   const { conversationId } = useParams<{ conversationId: string }>();
   const navigate = useNavigate();
-  const { messages, fetchMessages, sendMessage } = useConversationStore();
+  const { messages, fetchMessages, markRead, sendMessage } = useConversationStore();
   const { user } = useAuthStore();
   const [inputValue, setInputValue] = useState('');
   const messagesEndRef = useRef<HTMLDivElement>(null);
@@ -18,8 +17,7 @@ export const ConversationThread = () => {
 
   useEffect(() => {
     if (conversationId) {
-      fetchMessages(Number(conversationId));
-      subscribeToConversation(Number(conversationId));
+      fetchMessages(Number(conversationId)).then(() => markRead(Number(conversationId)));
     }
   }, [conversationId]);
 
@@ -1,9 +1,41 @@
 import SockJS from 'sockjs-client';
-import { Client, StompSubscription } from '@stomp/stompjs';
-import { useConversationStore } from '../store/conversationStore';
+import { Client, IMessage, StompSubscription } from '@stomp/stompjs';
+import { Message, Receipt, useConversationStore } from '../store/conversationStore';
+
+const BACKEND_URL = 'http://localhost:8080';
+
+// Native WebSocket where the browser has it; SockJS is only a fallback
+const createSocket = () =>
+  typeof WebSocket !== 'undefined'
+    ? new WebSocket(`${BACKEND_URL.replace(/^http/, 'ws')}/ws-native`)
+    : new SockJS(`${BACKEND_URL}/ws`);
+
+// Every conversation's events arrive on this one per-user queue
+const EVENTS_DESTINATION = '/user/queue/events';
+
+interface UserEvent {
+  type: 'message' | 'receipt' | 'flight';
+  conversationId: number;
+  payload: unknown;
+}
 
 let stompClient: Client | null = null;
-let subscriptions: Map<string, StompSubscription> = new Map();
+let eventsSubscription: StompSubscription | null = null;
+
+const onUserEvent = (frame: IMessage) => {
+  const event: UserEvent = JSON.parse(frame.body);
+  const store = useConversationStore.getState();
+  switch (event.type) {
+    case 'message':
+      store.addMessage(event.payload as Message);
+      break;
+    case 'receipt':
+      store.applyReceipt(event.payload as Receipt);
+      break;
+    default:
+      console.log('Received event:', event);
+  }
+};
 
 export const connectWebSocket = (token: string) => {
   if (stompClient?.active) {
@@ -11,10 +43,8 @@ export const connectWebSocket = (token: string) => {
     return stompClient;
   }
 
-  const socket = new SockJS('http://localhost:8080/ws');
-
   stompClient = new Client({
-    webSocketFactory: () => socket as any,
+    webSocketFactory: () => createSocket() as any,
     connectHeaders: {
       Authorization: `Bearer ${token}`,
     },
@@ -23,6 +53,12 @@ export const connectWebSocket = (token: string) => {
     },
     onConnect: () => {
       console.log('WebSocket connected');
+      // A new session after every (re)connect, so subscribe again, then fetch only what was missed
+      // while offline instead of reloading every conversation
+      eventsSubscription = stompClient!.subscribe(EVENTS_DESTINATION, onUserEvent);
+      useConversationStore.getState().sync().catch(error => {
+        console.error('Sync failed:', error);
+      });
     },
     onDisconnect: () => {
       console.log('WebSocket disconnected');
@@ -36,42 +72,10 @@ export const connectWebSocket = (token: string) => {
   return stompClient;
 };
 
-export const subscribeToConversation = (conversationId: number) => {
-  if (!stompClient?.active) {
-    console.error('WebSocket not connected');
-    return;
-  }
-
-  const destination = `/topic/conversations/${conversationId}`;
-
-  if (subscriptions.has(destination)) {
-    console.log('Already subscribed to', destination);
-    return;
-  }
-
-  const subscription = stompClient.subscribe(destination, (message) => {
-    const newMessage = JSON.parse(message.body);
-    console.log('Received message:', newMessage);
-    useConversationStore.getState().addMessage(newMessage);
-  });
-
-  subscriptions.set(destination, subscription);
-};
-
-export const unsubscribeFromConversation = (conversationId: number) => {
-  const destination = `/topic/conversations/${conversationId}`;
-  const subscription = subscriptions.get(destination);
-
-  if (subscription) {
-    subscription.unsubscribe();
-    subscriptions.delete(destination);
-  }
-};
-
 export const disconnectWebSocket = () => {
   if (stompClient) {
-    subscriptions.forEach(sub => sub.unsubscribe());
-    subscriptions.clear();
+    eventsSubscription?.unsubscribe();
+    eventsSubscription = null;
     stompClient.deactivate();
     stompClient = null;
   }
@@ -15,21 +15,61 @@ export interface Conversation {
   id: number;
   participantIds: number[];
   lastMessage?: Message;
+  otherParticipantName?: string;
+  otherParticipantAvatarUrl?: string;
   unreadCount: number;
   updatedAt: string;
 }
 
+export interface Receipt {
+  conversationId: number;
+  userId: number;
+  lastDeliveredMessageId?: number;
+  lastReadMessageId?: number;
+}
+
+export interface SyncResult {
+  conversations: Conversation[];
+  messages: Message[];
+  receipts: Receipt[];
+  cursor: string;
+  hasMore: boolean;
+  reset: boolean;
+}
+
+export interface MessagePage {
+  messages: Message[];
+  olderCursor?: string;
+  newerCursor?: string;
+  hasMore: boolean;
+}
+
 interface ConversationState {
   conversations: Conversation[];
   messages: Record<number, Message[]>;
+  syncCursor?: string;
 
   fetchConversations: () => Promise<void>;
   fetchMessages: (conversationId: number) => Promise<void>;
+  markRead: (conversationId: number) => Promise<void>;
   sendMessage: (conversationId: number, body: string, clientNonce: string) => Promise<void>;
   updateMessageStatus: (messageId: number, status: string) => void;
   addMessage: (message: Message) => void;
+  applyReceipt: (receipt: Receipt) => void;
+  sync: () => Promise<void>;
 }
 
+// Watermarks of the other participant decide the status of our messages, as on the server
+const applyReceipt = (messages: Message[], receipt: Receipt): Message[] =>
+  messages.map(m => {
+    if (m.senderId === receipt.userId) return m;
+    if (receipt.lastReadMessageId && m.id <= receipt.lastReadMessageId) return { ...m, status: 'read' };
+    if (receipt.lastDeliveredMessageId && m.id <= receipt.lastDeliveredMessageId && m.status !== 'read') {
+      return { ...m, status: 'delivered' };
+    }
+    return m;
+  });
+
 export const useConversationStore = create<ConversationState>((set, get) => ({
   conversations: [],
   messages: {},
@@ -41,8 +81,19 @@ export const useConversationStore = create<ConversationState>((set, get) => ({
 
   fetchMessages: async (conversationId) => {
     const response = await axios.get(`/api/conversations/${conversationId}/messages`);
+    // Pages are returned newest first; the thread renders oldest first
+    const page: MessagePage = response.data;
     set(state => ({
-      messages: { ...state.messages, [conversationId]: response.data }
+      messages: { ...state.messages, [conversationId]: [...page.messages].reverse() }
+    }));
+  },
+
+  markRead: async (conversationId) => {
+    await axios.post(`/api/conversations/${conversationId}/read`);
+    set(state => ({
+      conversations: state.conversations.map(c =>
+        c.id === conversationId ? { ...c, unreadCount: 0 } : c
+      )
     }));
   },
 
@@ -107,14 +158,74 @@ export const useConversationStore = create<ConversationState>((set, get) => ({
   },
 
   addMessage: (message) => {
-    set(state => ({
-      messages: {
-        ...state.messages,
-        [message.conversationId]: [
-          ...(state.messages[message.conversationId] || []),
-          message
-        ]
+    set(state => {
+      const thread = state.messages[message.conversationId] || [];
+      // Our own sends come back as events too, after the optimistic copy was replaced
+      if (thread.some(m => m.id === message.id || (message.clientNonce && m.clientNonce === message.clientNonce))) {
+        return {};
       }
-    }));
+      return {
+        messages: {
+          ...state.messages,
+          [message.conversationId]: [...thread, message]
+        }
+      };
+    });
+  },
+
+  applyReceipt: (receipt) => {
+    set(state => {
+      const thread = state.messages[receipt.conversationId];
+      if (!thread) return {};
+      return { messages: { ...state.messages, [receipt.conversationId]: applyReceipt(thread, receipt) } };
+    });
+  },
+
+  // Catches up after a reconnect with only what changed since the last sync. The first call just
+  // records the cursor; an expired cursor falls back to reloading what is on screen.
+  sync: async () => {
+    let cursor = get().syncCursor;
+    let hasMore = true;
+    while (hasMore) {
+      const response = await axios.get('/api/sync', { params: cursor ? { since: cursor } : {} });
+      const result: SyncResult = response.data;
+
+      if (result.reset) {
+        if (cursor) {
+          await get().fetchConversations();
+          await Promise.all(Object.keys(get().messages).map(id => get().fetchMessages(Number(id))));
+        }
+        set({ syncCursor: result.cursor });
+        return;
+      }
+
+      set(state => {
+        const changed = new Map(result.conversations.map(c => [c.id, c]));
+        const conversations = [
+          ...result.conversations.filter(c => !state.conversations.some(existing => existing.id === c.id)),
+          ...state.conversations.map(c => changed.get(c.id) ?? c),
+        ];
+
+        const messages = { ...state.messages };
+        result.messages.forEach(message => {
+          const thread = messages[message.conversationId];
+          // Threads not loaded yet are fetched in full when opened
+          if (thread && !thread.some(m => m.id === message.id || (message.clientNonce && m.clientNonce === message.clientNonce))) {
+            messages[message.conversationId] = [...thread, message];
+          }
+        });
+        result.receipts.forEach(receipt => {
+          const thread = messages[receipt.conversationId];
+          if (thread) {
+            messages[receipt.conversationId] = applyReceipt(thread, receipt);
+          }
+        });
+
+        return { conversations, messages, syncCursor: result.cursor };
+      });
+
+      cursor = result.cursor;
+      hasMore = result.hasMore;
+    }
   },
 }));
@@ -6,6 +6,7 @@ export interface Pigeon {
   name: string;
   spriteKey: string;
   level: number;
+  xp: number;
   mood: string;
   energy: number;
   trait: string;
@@ -17,6 +18,7 @@ interface PigeonState {
 
   fetchParty: () => Promise<void>;
   setActivePigeon: (pigeonId: number) => Promise<void>;
+  feedPigeon: (pigeonId: number) => Promise<void>;
 }
 
 export const usePigeonStore = create<PigeonState>((set) => ({
@@ -35,4 +37,13 @@ export const usePigeonStore = create<PigeonState>((set) => ({
       activePigeon: state.party.find(p => p.id === pigeonId) || null
     }));
   },
+
+  feedPigeon: async (pigeonId) => {
+    const response = await axios.post(`/api/pigeons/${pigeonId}/feed`);
+    const fed: Pigeon = response.data;
+    set(state => ({
+      party: state.party.map(p => (p.id === pigeonId ? fed : p)),
+      activePigeon: state.activePigeon?.id === pigeonId ? fed : state.activePigeon
+    }));
+  },
 }));